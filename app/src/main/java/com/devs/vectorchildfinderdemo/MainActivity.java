@@ -26,6 +26,7 @@ public class MainActivity extends AppCompatActivity {
     VectorDrawableCompat.VFullPath dressPath;
     VectorDrawableCompat.VGroup mouthGroup, eyesGroup;
     ImageView image;
+    VectorChildFinder vector;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -35,7 +36,7 @@ public class MainActivity extends AppCompatActivity {
 
          image = findViewById(R.id.image);
 
-        VectorChildFinder vector = new VectorChildFinder(this,
+        vector = new VectorChildFinder(this,
                 R.drawable.boy, image);
         dressPath = vector.findPathByName("dress_path");
         mouthGroup = vector.findGroupByName("mouth_group");
@@ -53,11 +54,12 @@ public class MainActivity extends AppCompatActivity {
         image.setOnTouchListener((v, event) -> {
             switch (event.getAction()){
                 case MotionEvent.ACTION_UP:
-                    // TODO
-                    Toast.makeText(MainActivity.this,
-                            mouthGroup.getScaleX() +"__"+
-                                    mouthGroup.getLocalMatrix(),
-                            Toast.LENGTH_SHORT).show();
+                    VectorDrawableCompat.VFullPath touched = vector.findPathAt(event.getX(),
+                            event.getY());
+                    if (touched != null) {
+                        Toast.makeText(MainActivity.this, touched.getPathName(),
+                                Toast.LENGTH_SHORT).show();
+                    }
                     break;
             }
             return true;
@@ -67,6 +69,7 @@ public class MainActivity extends AppCompatActivity {
 
     boolean e = true, m = true;
     public void onButtonClick(View view){
+        vector.beginTransaction();
         switch (view.getId()) {
             case R.id.button1:
                 dressPath.setFillColor(getResources().getColor(android.R.color.holo_red_light));
@@ -108,7 +111,7 @@ public class MainActivity extends AppCompatActivity {
                 break;
         }
 
-        image.invalidate();
+        vector.commitTransaction();
     }
 
 }
@@ -0,0 +1,39 @@
+package com.devs.vectorchildfinderdemo;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures what the test thread allocates while running a call many times.
+ */
+final class AllocationAssert {
+    private static final int WARM_UP_CALLS = 10;
+    private static final int MEASURED_CALLS = 100;
+
+    private AllocationAssert() {
+    }
+
+    /**
+     * Fails when call allocates once warmed up. Less than a byte per call is allowed, which
+     * leaves room for the allocations of getThreadAllocatedBytes() itself but not for a
+     * single object per call.
+     */
+    static void assertDoesNotAllocate(String name, Runnable call) {
+        for (int i = 0; i < WARM_UP_CALLS; i++) {
+            call.run();
+        }
+
+        final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            call.run();
+        }
+        final long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(name + " allocated " + allocated + " bytes in " + MEASURED_CALLS
+                + " calls", allocated < MEASURED_CALLS);
+    }
+}
@@ -0,0 +1,102 @@
+package com.devs.vectorchildfinderdemo;
+
+import static android.os.Looper.getMainLooper;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import com.devs.vectorchildfinder.VectorDrawableCompat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.annotation.LooperMode;
+
+/**
+ * Rasterizes on a direct executor, so that only the swap of the buffers waits for the main
+ * looper, and compares the images with the ones of a drawable drawn synchronously.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class AsyncRasterizationTest {
+    private static final int SIZE = 200;
+
+    private VectorDrawableCompat async;
+    private VectorDrawableCompat sync;
+
+    @Before
+    public void setUp() {
+        final Resources resources = RuntimeEnvironment.getApplication().getResources();
+        async = VectorDrawableCompat.create(resources, R.drawable.boy, null);
+        async.setBounds(0, 0, SIZE, SIZE);
+        async.setRasterizationExecutor(Runnable::run);
+        sync = VectorDrawableCompat.create(resources, R.drawable.boy, null);
+        sync.setBounds(0, 0, SIZE, SIZE);
+    }
+
+    @Test
+    public void draw_showsTheLastImageUntilTheSwap() {
+        final Bitmap before = draw(async);
+        change(async);
+
+        assertTrue(before.sameAs(draw(async)));
+    }
+
+    @Test
+    public void draw_afterTheSwap_matchesSynchronousDraw() {
+        draw(async);
+        draw(sync);
+        change(async);
+        change(sync);
+
+        draw(async);
+        shadowOf(getMainLooper()).idle();
+        final Bitmap swapped = draw(async);
+
+        final Bitmap expected = draw(sync);
+        assertTrue(expected.sameAs(swapped));
+    }
+
+    @Test
+    public void draw_afterSeveralSwaps_matchesSynchronousDraw() {
+        draw(async);
+        change(async);
+        draw(async);
+        shadowOf(getMainLooper()).idle();
+        // The second change is copied into the mirror made for the first one.
+        changeBack(async);
+        draw(async);
+        shadowOf(getMainLooper()).idle();
+        final Bitmap swapped = draw(async);
+
+        assertTrue(draw(sync).sameAs(swapped));
+    }
+
+    private static void change(VectorDrawableCompat drawable) {
+        ((VectorDrawableCompat.VFullPath) drawable.getTargetByName("dress_path"))
+                .setFillColor(Color.BLUE);
+        ((VectorDrawableCompat.VGroup) drawable.getTargetByName("mouth_group"))
+                .setTranslateX(-20);
+    }
+
+    private static void changeBack(VectorDrawableCompat drawable) {
+        ((VectorDrawableCompat.VFullPath) drawable.getTargetByName("dress_path"))
+                .setFillColor(0xFF74A32E);
+        ((VectorDrawableCompat.VGroup) drawable.getTargetByName("mouth_group"))
+                .setTranslateX(0);
+    }
+
+    private static Bitmap draw(VectorDrawableCompat drawable) {
+        final Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        drawable.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+}
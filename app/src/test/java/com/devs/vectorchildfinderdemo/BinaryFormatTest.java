@@ -0,0 +1,155 @@
+package com.devs.vectorchildfinderdemo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import android.graphics.Color;
+
+import com.devs.vectorchildfinder.VectorDrawableCompat;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Checks that a vector written in the binary format loads back to the same tree.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BinaryFormatTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private VectorDrawableCompat drawable;
+
+    @Before
+    public void setUp() {
+        drawable = VectorDrawableCompat.create(RuntimeEnvironment.getApplication().getResources(),
+                R.drawable.boy, null);
+    }
+
+    @Test
+    public void createFromBinary_roundTripsTheTree() throws IOException {
+        final byte[] written = write(drawable);
+        final VectorDrawableCompat loaded =
+                VectorDrawableCompat.createFromBinary(ByteBuffer.wrap(written));
+
+        assertArrayEquals(written, write(loaded));
+        assertEquals(drawable.getIntrinsicWidth(), loaded.getIntrinsicWidth());
+        assertEquals(drawable.getIntrinsicHeight(), loaded.getIntrinsicHeight());
+    }
+
+    @Test
+    public void createFromBinary_keepsRuntimeChangesAndNames() throws IOException {
+        final File file = folder.newFile("boy.vcf");
+        ((VectorDrawableCompat.VFullPath) drawable.getTargetByName("dress_path"))
+                .setFillColor(Color.RED);
+        ((VectorDrawableCompat.VGroup) drawable.getTargetByName("mouth_group"))
+                .setTranslateX(-10);
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            drawable.writeBinary(out);
+        } finally {
+            out.close();
+        }
+
+        final VectorDrawableCompat loaded = VectorDrawableCompat.createFromBinary(file);
+        assertEquals(Color.RED, ((VectorDrawableCompat.VFullPath)
+                loaded.getTargetByName("dress_path")).getFillColor());
+        assertEquals(-10, ((VectorDrawableCompat.VGroup)
+                loaded.getTargetByName("mouth_group")).getTranslateX(), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void createFromBinary_rejectsOtherContent() throws IOException {
+        VectorDrawableCompat.createFromBinary(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6}));
+    }
+
+    @Test
+    public void createFromBinary_rejectsTruncatedContent() throws IOException {
+        final byte[] written = write(drawable);
+        for (int length = 0; length < written.length; length += 7) {
+            try {
+                VectorDrawableCompat.createFromBinary(ByteBuffer.wrap(written, 0, length));
+                fail("Loaded the first " + length + " of " + written.length + " bytes");
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void createFromBinary_rejectsCorruptedStrokeCap() throws IOException {
+        final byte[] written = write(drawable);
+        written[strokeCapOffset(written, "dress_path")] = 42;
+        VectorDrawableCompat.createFromBinary(ByteBuffer.wrap(written));
+    }
+
+    @Test(expected = IOException.class)
+    public void createFromBinary_rejectsNodeWithWrongParameterCount() throws IOException {
+        final byte[] written = write(drawable);
+        final ByteBuffer buffer = ByteBuffer.wrap(written);
+        final int nodesOffset = nodesOffset(written, "dress_path");
+        final int nodeCount = buffer.getInt(nodesOffset);
+        // The first node is a moveto, which takes its parameters two by two.
+        buffer.putInt(nodesOffset + 4 + nodeCount, 3);
+        VectorDrawableCompat.createFromBinary(buffer);
+    }
+
+    @Test(expected = IOException.class)
+    public void createFromBinary_rejectsMissingTintMode() throws IOException {
+        final byte[] written = write(drawable);
+        // The tint mode follows the header, 4 floats, the root alpha, autoMirrored and the
+        // absent tint.
+        assertEquals(0, written[29]);
+        ByteBuffer.wrap(written).putInt(30, -1);
+        VectorDrawableCompat.createFromBinary(ByteBuffer.wrap(written));
+    }
+
+    /**
+     * @return the offset of the stroke cap of the path with the given name, which follows
+     * its name, its nodes, and 6 ints or floats.
+     */
+    private static int strokeCapOffset(byte[] written, String pathName) {
+        final ByteBuffer buffer = ByteBuffer.wrap(written);
+        buffer.position(nodesOffset(written, pathName));
+        final int nodeCount = buffer.getInt();
+        buffer.position(buffer.position() + nodeCount);
+        int paramCount = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            paramCount += buffer.getInt();
+        }
+        return buffer.position() + 4 * paramCount + 6 * 4;
+    }
+
+    /**
+     * @return the offset of the node count of the path with the given name, which follows
+     * its name.
+     */
+    private static int nodesOffset(byte[] written, String pathName) {
+        final byte[] name = pathName.getBytes(StandardCharsets.UTF_8);
+        int nameOffset = 0;
+        while (!Arrays.equals(name, Arrays.copyOfRange(written, nameOffset,
+                nameOffset + name.length))) {
+            nameOffset++;
+        }
+        return nameOffset + name.length;
+    }
+
+    private static byte[] write(VectorDrawableCompat drawable) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        drawable.writeBinary(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,89 @@
+package com.devs.vectorchildfinderdemo;
+
+import static org.junit.Assert.assertTrue;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import com.devs.vectorchildfinder.VectorDrawableCompat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+/**
+ * Checks that redrawing only the area of the cached bitmap changed since the last draw gives
+ * the same pixels as redrawing all of it.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class DirtyRectTest {
+    private static final int SIZE = 200;
+
+    private VectorDrawableCompat partial;
+    private VectorDrawableCompat full;
+
+    @Before
+    public void setUp() {
+        final Resources resources = RuntimeEnvironment.getApplication().getResources();
+        partial = VectorDrawableCompat.create(resources, R.drawable.boy, null);
+        partial.setBounds(0, 0, SIZE, SIZE);
+        full = VectorDrawableCompat.create(resources, R.drawable.boy, null);
+        full.setBounds(0, 0, SIZE, SIZE);
+        // Redraws the whole cached bitmap on every draw.
+        full.setAllowCaching(false);
+        draw(partial);
+    }
+
+    @Test
+    public void fillColorChange_matchesFullUpdate() {
+        setDressColor(partial, Color.BLUE);
+        setDressColor(full, Color.BLUE);
+
+        assertTrue(draw(full).sameAs(draw(partial)));
+    }
+
+    @Test
+    public void translateChange_matchesFullUpdate() {
+        // Leaves part of the old mouth to erase, at fractional coordinates.
+        setMouthTranslate(partial, -13.3f);
+        setMouthTranslate(full, -13.3f);
+
+        assertTrue(draw(full).sameAs(draw(partial)));
+    }
+
+    @Test
+    public void successiveChanges_matchFullUpdate() {
+        setDressColor(partial, Color.BLUE);
+        draw(partial);
+        setMouthTranslate(partial, 7.7f);
+        draw(partial);
+        setDressColor(partial, Color.RED);
+        setMouthTranslate(partial, -4.1f);
+
+        setDressColor(full, Color.RED);
+        setMouthTranslate(full, -4.1f);
+        assertTrue(draw(full).sameAs(draw(partial)));
+    }
+
+    private static void setDressColor(VectorDrawableCompat drawable, int color) {
+        ((VectorDrawableCompat.VFullPath) drawable.getTargetByName("dress_path"))
+                .setFillColor(color);
+    }
+
+    private static void setMouthTranslate(VectorDrawableCompat drawable, float translate) {
+        ((VectorDrawableCompat.VGroup) drawable.getTargetByName("mouth_group"))
+                .setTranslateX(translate);
+    }
+
+    private static Bitmap draw(VectorDrawableCompat drawable) {
+        final Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        drawable.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+}
@@ -0,0 +1,55 @@
+package com.devs.vectorchildfinderdemo;
+
+import static com.devs.vectorchildfinderdemo.AllocationAssert.assertDoesNotAllocate;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import com.devs.vectorchildfinder.VectorDrawableCompat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+/**
+ * Fails when a steady-state draw of the vector allocates, since garbage created at draw
+ * time shows up as jank in animations.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class DrawAllocationTest {
+    private VectorDrawableCompat drawable;
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        drawable = VectorDrawableCompat.create(RuntimeEnvironment.getApplication().getResources(),
+                R.drawable.boy, null);
+        drawable.setBounds(0, 0, 200, 200);
+        canvas = new Canvas(Bitmap.createBitmap(200, 200, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void unchangedDraw_doesNotAllocate() {
+        assertDoesNotAllocate("draw()", () -> drawable.draw(canvas));
+    }
+
+    @Test
+    public void mutatedDraw_doesNotAllocate() {
+        final VectorDrawableCompat.VFullPath dressPath =
+                (VectorDrawableCompat.VFullPath) drawable.getTargetByName("dress_path");
+        final VectorDrawableCompat.VGroup mouthGroup =
+                (VectorDrawableCompat.VGroup) drawable.getTargetByName("mouth_group");
+        final int[] frame = new int[1];
+        assertDoesNotAllocate("draw()", () -> {
+            final boolean even = frame[0]++ % 2 == 0;
+            dressPath.setFillColor(even ? Color.RED : Color.BLUE);
+            mouthGroup.setTranslateX(even ? -10 : 0);
+            drawable.draw(canvas);
+        });
+    }
+}
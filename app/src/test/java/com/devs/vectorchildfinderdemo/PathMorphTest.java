@@ -0,0 +1,94 @@
+package com.devs.vectorchildfinderdemo;
+
+import static com.devs.vectorchildfinderdemo.AllocationAssert.assertDoesNotAllocate;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.devs.vectorchildfinder.VectorDrawableCompat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+/**
+ * Morphs the dress path between shapes drawn in the empty top corners of the vector, and
+ * checks the morphed geometry by hit testing points which only one of the shapes covers.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class PathMorphTest {
+    // A square made of lines, in the top left corner.
+    private static final String SQUARE = "M10,10 H60 V60 H10 Z";
+    // Two contours made of curves: a quadratic cup inside the square, and a shape in the
+    // top right corner.
+    private static final String CUP_AND_DROP =
+            "M20,20 Q40,60 60,20 Z M420,20 C440,10 480,10 490,40 L430,80 Z";
+
+    private VectorDrawableCompat drawable;
+    private VectorDrawableCompat.VFullPath dressPath;
+
+    @Before
+    public void setUp() {
+        drawable = VectorDrawableCompat.create(RuntimeEnvironment.getApplication().getResources(),
+                R.drawable.boy, null);
+        // Same size as the viewport, so that points are in viewport coordinates.
+        drawable.setBounds(0, 0, 512, 512);
+        dressPath = (VectorDrawableCompat.VFullPath) drawable.getTargetByName("dress_path");
+    }
+
+    @Test
+    public void setMorph_startsOnTheFromShape() {
+        dressPath.setMorph(SQUARE, CUP_AND_DROP);
+
+        assertShowsSquare();
+    }
+
+    @Test
+    public void setMorphFraction_reachesTheToShapeWithMoreContours() {
+        dressPath.setMorph(SQUARE, CUP_AND_DROP);
+        dressPath.setMorphFraction(1);
+
+        assertShowsCupAndDrop();
+    }
+
+    @Test
+    public void setMorphFraction_reachesTheToShapeWithFewerContours() {
+        dressPath.setMorph(CUP_AND_DROP, SQUARE);
+        assertShowsCupAndDrop();
+
+        dressPath.setMorphFraction(1);
+        assertShowsSquare();
+    }
+
+    @Test
+    public void setMorphFraction_goesBackToTheFromShape() {
+        dressPath.setMorph(SQUARE, CUP_AND_DROP);
+        dressPath.setMorphFraction(0.5f);
+        dressPath.setMorphFraction(0);
+
+        assertShowsSquare();
+    }
+
+    @Test
+    public void setMorphFraction_doesNotAllocate() {
+        dressPath.setMorph(SQUARE, CUP_AND_DROP);
+        final int[] call = new int[1];
+        assertDoesNotAllocate("setMorphFraction()", () ->
+                dressPath.setMorphFraction((call[0]++ % 10) / 10f));
+    }
+
+    private void assertShowsSquare() {
+        assertSame(dressPath, drawable.findPathAt(15, 55));
+        assertSame(dressPath, drawable.findPathAt(40, 30));
+        assertNull(drawable.findPathAt(450, 40));
+    }
+
+    private void assertShowsCupAndDrop() {
+        assertNull(drawable.findPathAt(15, 55));
+        assertSame(dressPath, drawable.findPathAt(40, 30));
+        assertSame(dressPath, drawable.findPathAt(450, 40));
+    }
+}
@@ -0,0 +1,116 @@
+package com.devs.vectorchildfinderdemo;
+
+import static android.os.Looper.getMainLooper;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import com.devs.vectorchildfinder.VectorDrawableCompat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.annotation.LooperMode;
+
+import java.time.Duration;
+
+/**
+ * Compares what the tiled and mipmap render modes draw with what RENDER_MODE_BITMAP draws
+ * on the same canvas.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class RenderModeTest {
+    // Several tiles of 256 pixels in each direction.
+    private static final int SIZE = 600;
+    // Longer than the delay after which the mipmap mode rasterizes the exact size.
+    private static final long SETTLE_MS = 200;
+
+    private VectorDrawableCompat reference;
+
+    @Before
+    public void setUp() {
+        reference = create(VectorDrawableCompat.RENDER_MODE_BITMAP);
+    }
+
+    @Test
+    public void tiled_matchesBitmap() {
+        final VectorDrawableCompat tiled = create(VectorDrawableCompat.RENDER_MODE_TILED);
+
+        assertTrue(draw(reference).sameAs(draw(tiled)));
+    }
+
+    @Test
+    public void tiled_afterChangingSomeTiles_matchesBitmap() {
+        final VectorDrawableCompat tiled = create(VectorDrawableCompat.RENDER_MODE_TILED);
+        draw(tiled);
+        draw(reference);
+
+        // The mouth only covers the middle tile.
+        moveMouth(tiled);
+        moveMouth(reference);
+        assertTrue(draw(reference).sameAs(draw(tiled)));
+
+        // The dress covers the bottom tiles.
+        recolorDress(tiled);
+        recolorDress(reference);
+        assertTrue(draw(reference).sameAs(draw(tiled)));
+    }
+
+    @Test
+    public void settledMipmap_matchesBitmap() {
+        final VectorDrawableCompat mipmap = create(VectorDrawableCompat.RENDER_MODE_MIPMAP);
+        draw(mipmap);
+        shadowOf(getMainLooper()).idleFor(Duration.ofMillis(SETTLE_MS));
+
+        assertTrue(draw(reference).sameAs(draw(mipmap)));
+    }
+
+    @Test
+    public void settledMipmap_afterChanges_matchesBitmap() {
+        final VectorDrawableCompat mipmap = create(VectorDrawableCompat.RENDER_MODE_MIPMAP);
+        draw(mipmap);
+        shadowOf(getMainLooper()).idleFor(Duration.ofMillis(SETTLE_MS));
+        draw(mipmap);
+        draw(reference);
+
+        moveMouth(mipmap);
+        moveMouth(reference);
+        recolorDress(mipmap);
+        recolorDress(reference);
+        assertTrue(draw(reference).sameAs(draw(mipmap)));
+    }
+
+    private static VectorDrawableCompat create(int renderMode) {
+        final Resources resources = RuntimeEnvironment.getApplication().getResources();
+        final VectorDrawableCompat drawable =
+                VectorDrawableCompat.create(resources, R.drawable.boy, null);
+        drawable.setBounds(0, 0, SIZE, SIZE);
+        drawable.setRenderMode(renderMode);
+        return drawable;
+    }
+
+    private static void moveMouth(VectorDrawableCompat drawable) {
+        ((VectorDrawableCompat.VGroup) drawable.getTargetByName("mouth_group"))
+                .setTranslateX(-10);
+    }
+
+    private static void recolorDress(VectorDrawableCompat drawable) {
+        ((VectorDrawableCompat.VFullPath) drawable.getTargetByName("dress_path"))
+                .setFillColor(Color.BLUE);
+    }
+
+    private static Bitmap draw(VectorDrawableCompat drawable) {
+        final Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        drawable.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+}
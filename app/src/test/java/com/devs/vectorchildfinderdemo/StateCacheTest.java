@@ -0,0 +1,59 @@
+package com.devs.vectorchildfinderdemo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Resources;
+import android.graphics.Color;
+
+import com.devs.vectorchildfinder.VectorDrawableCompat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Checks that the drawables copied from the cached parsed tree are independent.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StateCacheTest {
+    private Resources resources;
+
+    @Before
+    public void setUp() {
+        resources = RuntimeEnvironment.getApplication().getResources();
+        VectorDrawableCompat.trimStateCache(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    @Test
+    public void create_returnsIndependentCopies() {
+        final VectorDrawableCompat first = VectorDrawableCompat.create(resources, R.drawable.boy,
+                null);
+        final int fillColor = dressPath(first).getFillColor();
+        dressPath(first).setFillColor(Color.RED);
+
+        final VectorDrawableCompat second = VectorDrawableCompat.create(resources, R.drawable.boy,
+                null);
+        assertNotSame(dressPath(first), dressPath(second));
+        assertEquals(fillColor, dressPath(second).getFillColor());
+        assertEquals(first.getIntrinsicWidth(), second.getIntrinsicWidth());
+    }
+
+    @Test
+    public void create_parsesAgainAfterTrim() {
+        final VectorDrawableCompat first = VectorDrawableCompat.create(resources, R.drawable.boy,
+                null);
+        VectorDrawableCompat.trimStateCache(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+
+        final VectorDrawableCompat second = VectorDrawableCompat.create(resources, R.drawable.boy,
+                null);
+        assertEquals(dressPath(first).getFillColor(), dressPath(second).getFillColor());
+    }
+
+    private static VectorDrawableCompat.VFullPath dressPath(VectorDrawableCompat drawable) {
+        return (VectorDrawableCompat.VFullPath) drawable.getTargetByName("dress_path");
+    }
+}
@@ -0,0 +1,100 @@
+package com.devs.vectorchildfinderdemo;
+
+import static android.os.Looper.getMainLooper;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.graphics.Color;
+import android.widget.ImageView;
+
+import com.devs.vectorchildfinder.VectorAnimator;
+import com.devs.vectorchildfinder.VectorChildFinder;
+import com.devs.vectorchildfinder.VectorDrawableCompat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.LooperMode;
+
+import java.time.Duration;
+
+/**
+ * Steps the animator through the paused main looper, which runs its Choreographer frames.
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class VectorAnimatorTest {
+    private static final long DURATION_MS = 100;
+
+    private VectorAnimator animator;
+    private VectorDrawableCompat.VGroup mouthGroup;
+    private VectorDrawableCompat.VFullPath dressPath;
+
+    @Before
+    public void setUp() {
+        final ImageView image = new ImageView(RuntimeEnvironment.getApplication());
+        final VectorChildFinder vector = new VectorChildFinder(
+                RuntimeEnvironment.getApplication(), R.drawable.boy, image);
+        animator = vector.getAnimator();
+        mouthGroup = vector.findGroupByName("mouth_group");
+        dressPath = vector.findPathByName("dress_path");
+    }
+
+    @Test
+    public void animate_interpolatesThenStopsAtEndValue() {
+        animator.animate("mouth_group", VectorAnimator.TRANSLATE_X, 0, -10, DURATION_MS);
+
+        shadowOf(getMainLooper()).idleFor(Duration.ofMillis(DURATION_MS / 2));
+        final float halfway = mouthGroup.getTranslateX();
+        assertTrue("translateX is " + halfway, halfway < 0 && halfway > -10);
+        assertTrue(animator.isRunning());
+
+        shadowOf(getMainLooper()).idleFor(Duration.ofMillis(DURATION_MS));
+        assertEquals(-10, mouthGroup.getTranslateX(), 0);
+        assertFalse(animator.isRunning());
+    }
+
+    @Test
+    public void animateColor_endsOnTargetColor() {
+        animator.animateColor("dress_path", VectorAnimator.FILL_COLOR, Color.RED, Color.BLUE,
+                DURATION_MS);
+
+        shadowOf(getMainLooper()).idleFor(Duration.ofMillis(DURATION_MS * 2));
+        assertEquals(Color.BLUE, dressPath.getFillColor());
+    }
+
+    @Test
+    public void animate_replacesRunningAnimationOfSameProperty() {
+        animator.animate("mouth_group", VectorAnimator.TRANSLATE_X, 0, -10, DURATION_MS);
+        animator.animate("mouth_group", VectorAnimator.TRANSLATE_X, 0, 20, DURATION_MS);
+
+        shadowOf(getMainLooper()).idleFor(Duration.ofMillis(DURATION_MS * 2));
+        assertEquals(20, mouthGroup.getTranslateX(), 0);
+    }
+
+    @Test
+    public void cancelAll_leavesCurrentValue() {
+        animator.animate("mouth_group", VectorAnimator.TRANSLATE_X, 0, -10, DURATION_MS);
+        shadowOf(getMainLooper()).idleFor(Duration.ofMillis(DURATION_MS / 2));
+        final float halfway = mouthGroup.getTranslateX();
+
+        animator.cancelAll();
+        shadowOf(getMainLooper()).idleFor(Duration.ofMillis(DURATION_MS));
+        assertEquals(halfway, mouthGroup.getTranslateX(), 0);
+        assertFalse(animator.isRunning());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void animate_rejectsUnknownProperty() {
+        animator.animate("dress_path", 42, 0, 1, DURATION_MS);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void animate_rejectsMorphFractionWithoutMorph() {
+        animator.animate("dress_path", VectorAnimator.MORPH_FRACTION, 0, 1, DURATION_MS);
+    }
+}
@@ -0,0 +1,86 @@
+package com.devs.vectorchildfinderdemo;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import com.devs.vectorchildfinder.VectorDrawableCompat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks that parsing the shared path data on a background thread, while a copy of the
+ * drawable is drawn, gives the same nodes as parsing it on a single thread.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class WarmUpTest {
+    private static final int ROUNDS = 20;
+
+    private Resources resources;
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        resources = RuntimeEnvironment.getApplication().getResources();
+        canvas = new Canvas(Bitmap.createBitmap(200, 200, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void warmUp_duringDraw_parsesTheSameNodes() throws Exception {
+        final byte[] expected = write(createUncached());
+
+        for (int round = 0; round < ROUNDS; round++) {
+            // The copies share the path data, which neither parsed yet.
+            final VectorDrawableCompat warmed = createUncached();
+            final VectorDrawableCompat drawn = VectorDrawableCompat.create(resources,
+                    R.drawable.boy, null);
+            drawn.setBounds(0, 0, 200, 200);
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    warmed.warmUp();
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            });
+            thread.start();
+            start.countDown();
+            drawn.draw(canvas);
+            thread.join();
+
+            if (failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+            assertArrayEquals(expected, write(warmed));
+            assertArrayEquals(expected, write(drawn));
+        }
+    }
+
+    private VectorDrawableCompat createUncached() {
+        VectorDrawableCompat.trimStateCache(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        return VectorDrawableCompat.create(resources, R.drawable.boy, null);
+    }
+
+    private static byte[] write(VectorDrawableCompat drawable) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        drawable.writeBinary(out);
+        return out.toByteArray();
+    }
+}
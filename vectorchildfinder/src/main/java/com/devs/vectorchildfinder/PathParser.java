@@ -92,6 +92,72 @@ class PathParser {
         return list.toArray(new PathDataNode[list.size()]);
     }
 
+    /**
+     * Rejects the characters which can't appear in path data, without parsing it, so that
+     * most malformed path data is reported at inflation even though it is parsed later.
+     * Malformed numbers made of valid characters are only found by the parsing.
+     *
+     * @param pathData The string representing a path, the same as "d" string in svg file.
+     * @throws RuntimeException if the path data contains an invalid character.
+     */
+    public static void checkPathData(String pathData) {
+        for (int i = 0; i < pathData.length(); i++) {
+            final char c = pathData.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9')
+                    && c != '.' && c != '-' && c != '+' && c != ','
+                    && !Character.isWhitespace(c)) {
+                throw new RuntimeException("error in parsing \"" + pathData + "\", invalid '"
+                        + c + "' at " + i);
+            }
+        }
+    }
+
+    /**
+     * @param type       The command of a node.
+     * @param paramCount The number of parameters of the node.
+     * @return whether type is a path command, and paramCount a multiple of the number of
+     * parameters it takes, which is 0 for 'z'.
+     */
+    static boolean isValidNode(char type, int paramCount) {
+        final int incr;
+        switch (type) {
+            case 'z':
+            case 'Z':
+                return paramCount == 0;
+            case 'm':
+            case 'M':
+            case 'l':
+            case 'L':
+            case 't':
+            case 'T':
+                incr = 2;
+                break;
+            case 'h':
+            case 'H':
+            case 'v':
+            case 'V':
+                incr = 1;
+                break;
+            case 'c':
+            case 'C':
+                incr = 6;
+                break;
+            case 's':
+            case 'S':
+            case 'q':
+            case 'Q':
+                incr = 4;
+                break;
+            case 'a':
+            case 'A':
+                incr = 7;
+                break;
+            default:
+                return false;
+        }
+        return paramCount % incr == 0;
+    }
+
     /**
      * @param source The array of PathDataNode to be duplicated.
      * @return a deep copy of the <code>source</code>.
@@ -131,6 +197,26 @@ class PathParser {
         return true;
     }
 
+    /**
+     * Before calling this, make sure canMorph(nodesA, nodesB) is true.
+     *
+     * @param nodesA The first path represented in an array of PathDataNode
+     * @param nodesB The second path represented in an array of PathDataNode
+     * @return whether every parameter of <code>nodesA</code> equals the one in <code>nodesB</code>
+     */
+    public static boolean hasSameParams(PathDataNode[] nodesA, PathDataNode[] nodesB) {
+        for (int i = 0; i < nodesA.length; i++) {
+            final float[] paramsA = nodesA[i].params;
+            final float[] paramsB = nodesB[i].params;
+            for (int j = 0; j < paramsA.length; j++) {
+                if (paramsA[j] != paramsB[j]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Update the target's data to match the source.
      * Before calling this, make sure canMorph(target, source) is true.
@@ -147,6 +233,266 @@ class PathParser {
         }
     }
 
+    /**
+     * Normalises two paths of any shape into node lists which canMorph() accepts, so that
+     * they can be interpolated without allocating. Each contour becomes an absolute 'M'
+     * node, a 'C' node holding all its curves and an optional 'z' node. Lines, quadratic
+     * curves and arcs are converted to cubic curves, the path with fewer contours gets
+     * contours collapsed to a point, and the curves of the contour with fewer curves are
+     * split until both have as many.
+     *
+     * @param nodesFrom The source path represented in an array of PathDataNode
+     * @param nodesTo   The target path represented in an array of PathDataNode
+     * @return the normalised <code>nodesFrom</code> and <code>nodesTo</code>.
+     */
+    public static PathDataNode[][] createMorphableNodes(PathDataNode[] nodesFrom,
+                                                        PathDataNode[] nodesTo) {
+        final ArrayList<CubicContour> contoursFrom = toCubicContours(nodesFrom);
+        final ArrayList<CubicContour> contoursTo = toCubicContours(nodesTo);
+        while (contoursFrom.size() < contoursTo.size()) {
+            contoursFrom.add(new CubicContour(contoursTo.get(contoursFrom.size())));
+        }
+        while (contoursTo.size() < contoursFrom.size()) {
+            contoursTo.add(new CubicContour(contoursFrom.get(contoursTo.size())));
+        }
+
+        final ArrayList<PathDataNode> listFrom = new ArrayList<PathDataNode>();
+        final ArrayList<PathDataNode> listTo = new ArrayList<PathDataNode>();
+        for (int i = 0; i < contoursFrom.size(); i++) {
+            final CubicContour contourFrom = contoursFrom.get(i);
+            final CubicContour contourTo = contoursTo.get(i);
+            if (contourFrom.mClosed != contourTo.mClosed) {
+                // Draw the closing line explicitly, so that both sides end the same way.
+                contourFrom.open();
+                contourTo.open();
+            }
+            while (contourFrom.mCount < contourTo.mCount) {
+                contourFrom.splitLongestCurve();
+            }
+            while (contourTo.mCount < contourFrom.mCount) {
+                contourTo.splitLongestCurve();
+            }
+            contourFrom.addNodes(listFrom);
+            contourTo.addNodes(listTo);
+        }
+        return new PathDataNode[][]{
+                listFrom.toArray(new PathDataNode[listFrom.size()]),
+                listTo.toArray(new PathDataNode[listTo.size()])};
+    }
+
+    private static ArrayList<CubicContour> toCubicContours(PathDataNode[] nodes) {
+        final CubicRecorder recorder = new CubicRecorder();
+        if (nodes != null) {
+            PathDataNode.nodesToPath(nodes, recorder);
+        }
+        return recorder.mContours;
+    }
+
+    /**
+     * Records the commands issued by PathDataNode.nodesToPath() as absolute cubic curves,
+     * instead of building a Path.
+     */
+    private static class CubicRecorder extends Path {
+        final ArrayList<CubicContour> mContours = new ArrayList<CubicContour>();
+        private CubicContour mContour;
+        private float mX;
+        private float mY;
+
+        @Override
+        public void moveTo(float x, float y) {
+            mContour = null;
+            mX = x;
+            mY = y;
+        }
+
+        @Override
+        public void rMoveTo(float dx, float dy) {
+            moveTo(mX + dx, mY + dy);
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            cubicTo(mX + (x - mX) / 3, mY + (y - mY) / 3,
+                    x + (mX - x) / 3, y + (mY - y) / 3, x, y);
+        }
+
+        @Override
+        public void rLineTo(float dx, float dy) {
+            lineTo(mX + dx, mY + dy);
+        }
+
+        @Override
+        public void quadTo(float x1, float y1, float x2, float y2) {
+            cubicTo(mX + 2 * (x1 - mX) / 3, mY + 2 * (y1 - mY) / 3,
+                    x2 + 2 * (x1 - x2) / 3, y2 + 2 * (y1 - y2) / 3, x2, y2);
+        }
+
+        @Override
+        public void rQuadTo(float dx1, float dy1, float dx2, float dy2) {
+            quadTo(mX + dx1, mY + dy1, mX + dx2, mY + dy2);
+        }
+
+        @Override
+        public void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+            if (mContour == null) {
+                mContour = new CubicContour(mX, mY);
+                mContours.add(mContour);
+            }
+            mContour.add(x1, y1, x2, y2, x3, y3);
+            mX = x3;
+            mY = y3;
+        }
+
+        @Override
+        public void rCubicTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+            cubicTo(mX + x1, mY + y1, mX + x2, mY + y2, mX + x3, mY + y3);
+        }
+
+        @Override
+        public void close() {
+            if (mContour != null) {
+                mContour.mClosed = true;
+                mX = mContour.mStartX;
+                mY = mContour.mStartY;
+                mContour = null;
+            }
+        }
+    }
+
+    /**
+     * A contour made of absolute cubic curves, 6 floats per curve.
+     */
+    private static class CubicContour {
+        final float mStartX;
+        final float mStartY;
+        float[] mCurves = new float[6 * 4];
+        int mCount;
+        boolean mClosed;
+
+        CubicContour(float startX, float startY) {
+            mStartX = startX;
+            mStartY = startY;
+        }
+
+        /**
+         * Creates a contour collapsed on the start point of the given one, which a morph
+         * grows into it.
+         */
+        CubicContour(CubicContour counterpart) {
+            this(counterpart.mStartX, counterpart.mStartY);
+            add(mStartX, mStartY, mStartX, mStartY, mStartX, mStartY);
+            mClosed = counterpart.mClosed;
+        }
+
+        void add(float x1, float y1, float x2, float y2, float x3, float y3) {
+            insert(mCount, x1, y1, x2, y2, x3, y3);
+        }
+
+        private void insert(int index, float x1, float y1, float x2, float y2, float x3,
+                            float y3) {
+            if ((mCount + 1) * 6 > mCurves.length) {
+                final float[] curves = new float[mCurves.length * 2];
+                System.arraycopy(mCurves, 0, curves, 0, mCount * 6);
+                mCurves = curves;
+            }
+            System.arraycopy(mCurves, index * 6, mCurves, (index + 1) * 6,
+                    (mCount - index) * 6);
+            final int offset = index * 6;
+            mCurves[offset] = x1;
+            mCurves[offset + 1] = y1;
+            mCurves[offset + 2] = x2;
+            mCurves[offset + 3] = y2;
+            mCurves[offset + 4] = x3;
+            mCurves[offset + 5] = y3;
+            mCount++;
+        }
+
+        private float getStartX(int index) {
+            return index == 0 ? mStartX : mCurves[index * 6 - 2];
+        }
+
+        private float getStartY(int index) {
+            return index == 0 ? mStartY : mCurves[index * 6 - 1];
+        }
+
+        /**
+         * Turns a closed contour into an open one ending with an explicit closing line.
+         */
+        void open() {
+            if (!mClosed) {
+                return;
+            }
+            final float endX = getStartX(mCount);
+            final float endY = getStartY(mCount);
+            if (endX != mStartX || endY != mStartY) {
+                add(endX + (mStartX - endX) / 3, endY + (mStartY - endY) / 3,
+                        mStartX + (endX - mStartX) / 3, mStartY + (endY - mStartY) / 3,
+                        mStartX, mStartY);
+            }
+            mClosed = false;
+        }
+
+        /**
+         * Splits the curve with the longest control polygon in two halves.
+         */
+        void splitLongestCurve() {
+            int longest = 0;
+            float longestLength = -1;
+            for (int i = 0; i < mCount; i++) {
+                final int offset = i * 6;
+                float x = getStartX(i);
+                float y = getStartY(i);
+                float length = 0;
+                for (int j = 0; j < 6; j += 2) {
+                    length += (float) Math.hypot(mCurves[offset + j] - x,
+                            mCurves[offset + j + 1] - y);
+                    x = mCurves[offset + j];
+                    y = mCurves[offset + j + 1];
+                }
+                if (length > longestLength) {
+                    longest = i;
+                    longestLength = length;
+                }
+            }
+
+            // De Casteljau's algorithm at t = 0.5.
+            final int offset = longest * 6;
+            final float x0 = getStartX(longest);
+            final float y0 = getStartY(longest);
+            final float x1 = mCurves[offset];
+            final float y1 = mCurves[offset + 1];
+            final float x2 = mCurves[offset + 2];
+            final float y2 = mCurves[offset + 3];
+            final float x3 = mCurves[offset + 4];
+            final float y3 = mCurves[offset + 5];
+            final float x01 = (x0 + x1) / 2;
+            final float y01 = (y0 + y1) / 2;
+            final float x12 = (x1 + x2) / 2;
+            final float y12 = (y1 + y2) / 2;
+            final float x23 = (x2 + x3) / 2;
+            final float y23 = (y2 + y3) / 2;
+            final float x012 = (x01 + x12) / 2;
+            final float y012 = (y01 + y12) / 2;
+            final float x123 = (x12 + x23) / 2;
+            final float y123 = (y12 + y23) / 2;
+            final float xMid = (x012 + x123) / 2;
+            final float yMid = (y012 + y123) / 2;
+            mCurves[offset] = x123;
+            mCurves[offset + 1] = y123;
+            mCurves[offset + 2] = x23;
+            mCurves[offset + 3] = y23;
+            insert(longest, x01, y01, x012, y012, xMid, yMid);
+        }
+
+        void addNodes(ArrayList<PathDataNode> list) {
+            list.add(new PathDataNode('M', new float[]{mStartX, mStartY}));
+            list.add(new PathDataNode('C', copyOfRange(mCurves, 0, mCount * 6)));
+            if (mClosed) {
+                list.add(new PathDataNode('z', new float[0]));
+            }
+        }
+    }
+
     private static int nextStart(String s, int end) {
         char c;
 
@@ -305,7 +651,21 @@ class PathParser {
          * @param path The target Path object.
          */
         public static void nodesToPath(PathDataNode[] node, Path path) {
-            float[] current = new float[6];
+            nodesToPath(node, path, new float[6]);
+        }
+
+        /**
+         * Convert an array of PathDataNode to Path, without allocating.
+         *
+         * @param node    The source array of PathDataNode.
+         * @param path    The target Path object.
+         * @param current Buffer of at least 6 floats used for the current point, its content
+         *                is overwritten.
+         */
+        public static void nodesToPath(PathDataNode[] node, Path path, float[] current) {
+            for (int i = 0; i < 6; i++) {
+                current[i] = 0;
+            }
             char previousCommand = 'm';
             for (int i = 0; i < node.length; i++) {
                 addCommand(path, current, previousCommand, node[i].type, node[i].params);
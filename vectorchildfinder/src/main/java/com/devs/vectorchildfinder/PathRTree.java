@@ -0,0 +1,165 @@
+package com.devs.vectorchildfinder;
+
+import java.util.Arrays;
+
+/**
+ * Packed R-tree over the bounding boxes of a fixed number of items, bulk loaded with the
+ * Sort-Tile-Recursive algorithm. The boxes are given as minX, minY, maxX, maxY for each
+ * item. They can move after build(), refit() then updates the tree without changing its
+ * structure, which keeps the tree usable while paths are animated.
+ */
+final class PathRTree {
+    private static final int NODE_CAPACITY = 16;
+
+    private int mItemCount;
+    // Item indexes in the order of the leaf level.
+    private int[] mItems;
+    // minX, minY, maxX, maxY of every node, level by level starting with the leaves.
+    // Level l holds the nodes [mLevelStart[l], mLevelStart[l + 1]), and the node j of
+    // level l + 1 covers the nodes [j * NODE_CAPACITY, (j + 1) * NODE_CAPACITY) of level l.
+    private float[] mBoxes;
+    private int[] mLevelStart;
+    private int mLevelCount;
+    private int[] mStack;
+
+    /**
+     * Builds the tree for the first count boxes.
+     */
+    void build(float[] boxes, int count) {
+        mItemCount = count;
+        mItems = new int[count];
+        for (int i = 0; i < count; i++) {
+            mItems[i] = i;
+        }
+        if (count == 0) {
+            mLevelCount = 0;
+            return;
+        }
+
+        // Sort by x, cut into vertical slices of about sqrt(leaf count) leaves, and sort
+        // each slice by y, so that the nodes cover compact areas.
+        final long[] keys = new long[count];
+        sortByCenter(boxes, keys, 0, count, 0);
+        final int leafCount = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        final int sliceSize = (int) Math.ceil(Math.sqrt(leafCount)) * NODE_CAPACITY;
+        for (int start = 0; start < count; start += sliceSize) {
+            sortByCenter(boxes, keys, start, Math.min(start + sliceSize, count), 1);
+        }
+
+        int levelCount = 1;
+        int total = count;
+        for (int size = count; size > 1; levelCount++) {
+            size = (size + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            total += size;
+        }
+        mLevelCount = levelCount;
+        mLevelStart = new int[levelCount + 1];
+        for (int l = 0, size = count; l < levelCount; l++) {
+            mLevelStart[l + 1] = mLevelStart[l] + size;
+            size = (size + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        }
+        mBoxes = new float[4 * total];
+        // Node and level of up to NODE_CAPACITY pending siblings per level.
+        mStack = new int[2 * levelCount * NODE_CAPACITY];
+        refit(boxes);
+    }
+
+    /**
+     * Sorts mItems[start, end) by the center of their boxes along x (axis 0) or y (axis 1).
+     */
+    private void sortByCenter(float[] boxes, long[] keys, int start, int end, int axis) {
+        for (int i = start; i < end; i++) {
+            final int item = mItems[i];
+            final float center = boxes[4 * item + axis] + boxes[4 * item + axis + 2];
+            // Flip the bits of negative floats so that their order is the one of the ints.
+            int bits = Float.floatToIntBits(center);
+            bits ^= (bits >> 31) & 0x7fffffff;
+            keys[i] = ((long) bits << 32) | item;
+        }
+        Arrays.sort(keys, start, end);
+        for (int i = start; i < end; i++) {
+            mItems[i] = (int) keys[i];
+        }
+    }
+
+    /**
+     * Updates the tree for the new boxes of the items, which must be as many as in build().
+     * An empty box never contains any point.
+     */
+    void refit(float[] boxes) {
+        for (int i = 0; i < mItemCount; i++) {
+            final int item = mItems[i];
+            final float minX = boxes[4 * item];
+            final float minY = boxes[4 * item + 1];
+            final float maxX = boxes[4 * item + 2];
+            final float maxY = boxes[4 * item + 3];
+            if (minX >= maxX || minY >= maxY) {
+                setEmpty(i);
+            } else {
+                mBoxes[4 * i] = minX;
+                mBoxes[4 * i + 1] = minY;
+                mBoxes[4 * i + 2] = maxX;
+                mBoxes[4 * i + 3] = maxY;
+            }
+        }
+        for (int l = 1; l < mLevelCount; l++) {
+            final int childStart = mLevelStart[l - 1];
+            final int childEnd = mLevelStart[l];
+            for (int node = mLevelStart[l]; node < mLevelStart[l + 1]; node++) {
+                setEmpty(node);
+                final int first = childStart + (node - mLevelStart[l]) * NODE_CAPACITY;
+                final int last = Math.min(first + NODE_CAPACITY, childEnd);
+                for (int child = first; child < last; child++) {
+                    mBoxes[4 * node] = Math.min(mBoxes[4 * node], mBoxes[4 * child]);
+                    mBoxes[4 * node + 1] = Math.min(mBoxes[4 * node + 1], mBoxes[4 * child + 1]);
+                    mBoxes[4 * node + 2] = Math.max(mBoxes[4 * node + 2], mBoxes[4 * child + 2]);
+                    mBoxes[4 * node + 3] = Math.max(mBoxes[4 * node + 3], mBoxes[4 * child + 3]);
+                }
+            }
+        }
+    }
+
+    private void setEmpty(int node) {
+        mBoxes[4 * node] = Float.POSITIVE_INFINITY;
+        mBoxes[4 * node + 1] = Float.POSITIVE_INFINITY;
+        mBoxes[4 * node + 2] = Float.NEGATIVE_INFINITY;
+        mBoxes[4 * node + 3] = Float.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Collects the items whose box contains (x, y), in no particular order.
+     *
+     * @param out Receives the item indexes, it must have room for all the items.
+     * @return the number of items written to out.
+     */
+    int query(float x, float y, int[] out) {
+        if (mLevelCount == 0) {
+            return 0;
+        }
+        int count = 0;
+        int top = 0;
+        // The root is the only node of the last level.
+        mStack[top++] = mLevelStart[mLevelCount - 1];
+        mStack[top++] = mLevelCount - 1;
+        while (top > 0) {
+            final int level = mStack[--top];
+            final int node = mStack[--top];
+            if (x < mBoxes[4 * node] || y < mBoxes[4 * node + 1]
+                    || x > mBoxes[4 * node + 2] || y > mBoxes[4 * node + 3]) {
+                continue;
+            }
+            if (level == 0) {
+                out[count++] = mItems[node];
+                continue;
+            }
+            final int childStart = mLevelStart[level - 1];
+            final int first = childStart + (node - mLevelStart[level]) * NODE_CAPACITY;
+            final int last = Math.min(first + NODE_CAPACITY, mLevelStart[level]);
+            for (int child = first; child < last; child++) {
+                mStack[top++] = child;
+                mStack[top++] = level - 1;
+            }
+        }
+        return count;
+    }
+}
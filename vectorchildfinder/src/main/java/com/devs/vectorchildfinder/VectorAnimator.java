@@ -0,0 +1,373 @@
+package com.devs.vectorchildfinder;
+
+import android.animation.TimeInterpolator;
+import android.graphics.Color;
+import android.view.Choreographer;
+
+/**
+ * Animates properties of the paths and groups found by a VectorChildFinder.
+ * All the animations run from a single Choreographer frame callback, and the ImageView
+ * is invalidated at most once per frame, only when a value actually changed.
+ * Must be used from the UI thread.
+ */
+public class VectorAnimator {
+
+    // Group properties.
+    public static final int ROTATION = 0;
+    public static final int PIVOT_X = 1;
+    public static final int PIVOT_Y = 2;
+    public static final int SCALE_X = 3;
+    public static final int SCALE_Y = 4;
+    public static final int TRANSLATE_X = 5;
+    public static final int TRANSLATE_Y = 6;
+    // Path properties.
+    public static final int FILL_ALPHA = 7;
+    public static final int STROKE_ALPHA = 8;
+    public static final int STROKE_WIDTH = 9;
+    public static final int TRIM_PATH_START = 10;
+    public static final int TRIM_PATH_END = 11;
+    public static final int TRIM_PATH_OFFSET = 12;
+    // Path colour properties, animated with animateColor().
+    public static final int FILL_COLOR = 13;
+    public static final int STROKE_COLOR = 14;
+    // Fraction of the morph prepared by VFullPath.setMorph().
+    public static final int MORPH_FRACTION = 15;
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    private final VectorChildFinder vectorChildFinder;
+    private final Choreographer choreographer;
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onFrame(frameTimeNanos);
+        }
+    };
+    private boolean frameScheduled;
+
+    // The running animations, kept in parallel arrays so that a frame allocates nothing.
+    // Colour animations use fromColors / toColors instead of fromValues / toValues.
+    private int count;
+    private Object[] targets = new Object[INITIAL_CAPACITY];
+    private int[] properties = new int[INITIAL_CAPACITY];
+    private float[] fromValues = new float[INITIAL_CAPACITY];
+    private float[] toValues = new float[INITIAL_CAPACITY];
+    private int[] fromColors = new int[INITIAL_CAPACITY];
+    private int[] toColors = new int[INITIAL_CAPACITY];
+    private long[] delays = new long[INITIAL_CAPACITY];
+    private long[] durations = new long[INITIAL_CAPACITY];
+    // Frame time at which the animation starts, -1 until its first frame.
+    private long[] startTimes = new long[INITIAL_CAPACITY];
+    private TimeInterpolator[] interpolators = new TimeInterpolator[INITIAL_CAPACITY];
+
+    /**
+     * @param vectorChildFinder Finder of the vector drawable whose paths and groups are animated
+     */
+    public VectorAnimator(VectorChildFinder vectorChildFinder) {
+        this.vectorChildFinder = vectorChildFinder;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+
+    /**
+     * Animates a property linearly, starting on the next frame.
+     *
+     * @param targetName Name of the path or group in the vector drawable file
+     * @param property One of the group or path properties, except the colours
+     */
+    public void animate(String targetName, int property, float from, float to,
+                        long durationMillis) {
+        animate(targetName, property, from, to, durationMillis, 0, null);
+    }
+
+
+    /**
+     * Animates a property. A running animation of the same property of the same target
+     * is replaced.
+     *
+     * @param targetName Name of the path or group in the vector drawable file
+     * @param property One of the group or path properties, except the colours
+     * @param interpolator null for a linear animation
+     * @throws IllegalArgumentException if the property is unknown or a colour, or the target
+     * has no such property.
+     * @throws IllegalStateException for MORPH_FRACTION, if setMorph() wasn't called on the path.
+     */
+    public void animate(String targetName, int property, float from, float to,
+                        long durationMillis, long delayMillis, TimeInterpolator interpolator) {
+        if (property < ROTATION || property > MORPH_FRACTION) {
+            throw new IllegalArgumentException("Unknown property " + property);
+        }
+        if (property == FILL_COLOR || property == STROKE_COLOR) {
+            throw new IllegalArgumentException("Colours are animated with animateColor()");
+        }
+        final int index = add(findTarget(targetName, property), property, durationMillis,
+                delayMillis, interpolator);
+        fromValues[index] = from;
+        toValues[index] = to;
+    }
+
+
+    /**
+     * Animates FILL_COLOR or STROKE_COLOR linearly, starting on the next frame.
+     */
+    public void animateColor(String targetName, int property, int from, int to,
+                             long durationMillis) {
+        animateColor(targetName, property, from, to, durationMillis, 0, null);
+    }
+
+
+    /**
+     * Animates FILL_COLOR or STROKE_COLOR, interpolating each ARGB channel. A running
+     * animation of the same property of the same path is replaced.
+     *
+     * @param interpolator null for a linear animation
+     * @throws IllegalArgumentException if the property isn't a colour, or the target isn't
+     * a path.
+     */
+    public void animateColor(String targetName, int property, int from, int to,
+                             long durationMillis, long delayMillis,
+                             TimeInterpolator interpolator) {
+        if (property != FILL_COLOR && property != STROKE_COLOR) {
+            throw new IllegalArgumentException("Only colours are animated with animateColor()");
+        }
+        final int index = add(findTarget(targetName, property), property, durationMillis,
+                delayMillis, interpolator);
+        fromColors[index] = from;
+        toColors[index] = to;
+    }
+
+
+    /**
+     * Stops all the animations, leaving the properties at their current values.
+     */
+    public void cancelAll() {
+        for (int i = 0; i < count; i++) {
+            targets[i] = null;
+            interpolators[i] = null;
+        }
+        count = 0;
+        if (frameScheduled) {
+            choreographer.removeFrameCallback(frameCallback);
+            frameScheduled = false;
+        }
+    }
+
+
+    /**
+     * @return whether an animation is running or waiting for its start delay.
+     */
+    public boolean isRunning() {
+        return count > 0;
+    }
+
+
+    private Object findTarget(String targetName, int property) {
+        final Object target = vectorChildFinder.getVectorDrawable().getTargetByName(targetName);
+        final boolean groupProperty = property >= ROTATION && property <= TRANSLATE_Y;
+        if (groupProperty && !(target instanceof VectorDrawableCompat.VGroup)) {
+            throw new IllegalArgumentException("No group named " + targetName);
+        }
+        if (!groupProperty && !(target instanceof VectorDrawableCompat.VFullPath)) {
+            throw new IllegalArgumentException("No path named " + targetName);
+        }
+        // Checked here rather than on the first frame, so that the caller gets the error.
+        if (property == MORPH_FRACTION
+                && !((VectorDrawableCompat.VFullPath) target).hasMorph()) {
+            throw new IllegalStateException("setMorph() must be called on " + targetName
+                    + " first");
+        }
+        return target;
+    }
+
+    /**
+     * @return the index of the new animation, whose values are left to the caller.
+     */
+    private int add(Object target, int property, long durationMillis, long delayMillis,
+                    TimeInterpolator interpolator) {
+        int index = 0;
+        while (index < count && (targets[index] != target || properties[index] != property)) {
+            index++;
+        }
+        if (index == count) {
+            if (count == targets.length) {
+                grow();
+            }
+            count++;
+        }
+        targets[index] = target;
+        properties[index] = property;
+        delays[index] = Math.max(0, delayMillis) * NANOS_PER_MILLI;
+        durations[index] = Math.max(0, durationMillis) * NANOS_PER_MILLI;
+        startTimes[index] = -1;
+        interpolators[index] = interpolator;
+
+        if (!frameScheduled) {
+            choreographer.postFrameCallback(frameCallback);
+            frameScheduled = true;
+        }
+        return index;
+    }
+
+    private void grow() {
+        final int capacity = targets.length * 2;
+        final Object[] newTargets = new Object[capacity];
+        System.arraycopy(targets, 0, newTargets, 0, count);
+        targets = newTargets;
+        final int[] newProperties = new int[capacity];
+        System.arraycopy(properties, 0, newProperties, 0, count);
+        properties = newProperties;
+        final float[] newFromValues = new float[capacity];
+        System.arraycopy(fromValues, 0, newFromValues, 0, count);
+        fromValues = newFromValues;
+        final float[] newToValues = new float[capacity];
+        System.arraycopy(toValues, 0, newToValues, 0, count);
+        toValues = newToValues;
+        final int[] newFromColors = new int[capacity];
+        System.arraycopy(fromColors, 0, newFromColors, 0, count);
+        fromColors = newFromColors;
+        final int[] newToColors = new int[capacity];
+        System.arraycopy(toColors, 0, newToColors, 0, count);
+        toColors = newToColors;
+        final long[] newDelays = new long[capacity];
+        System.arraycopy(delays, 0, newDelays, 0, count);
+        delays = newDelays;
+        final long[] newDurations = new long[capacity];
+        System.arraycopy(durations, 0, newDurations, 0, count);
+        durations = newDurations;
+        final long[] newStartTimes = new long[capacity];
+        System.arraycopy(startTimes, 0, newStartTimes, 0, count);
+        startTimes = newStartTimes;
+        final TimeInterpolator[] newInterpolators = new TimeInterpolator[capacity];
+        System.arraycopy(interpolators, 0, newInterpolators, 0, count);
+        interpolators = newInterpolators;
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        final VectorDrawableCompat drawable = vectorChildFinder.getVectorDrawable();
+        final int generation = drawable.getTreeGeneration();
+
+        // Apply every animation, and pack the unfinished ones at the start of the arrays.
+        int running = 0;
+        for (int i = 0; i < count; i++) {
+            if (startTimes[i] < 0) {
+                startTimes[i] = frameTimeNanos + delays[i];
+            }
+            final long elapsed = frameTimeNanos - startTimes[i];
+            boolean finished = false;
+            if (elapsed >= 0) {
+                float fraction = 1;
+                if (durations[i] > 0 && elapsed < durations[i]) {
+                    fraction = (float) elapsed / durations[i];
+                }
+                finished = fraction == 1;
+                if (interpolators[i] != null) {
+                    fraction = interpolators[i].getInterpolation(fraction);
+                }
+                apply(i, fraction);
+            }
+            if (!finished) {
+                if (running != i) {
+                    move(i, running);
+                }
+                running++;
+            }
+        }
+        for (int i = running; i < count; i++) {
+            targets[i] = null;
+            interpolators[i] = null;
+        }
+        count = running;
+
+        if (drawable.getTreeGeneration() != generation) {
+            vectorChildFinder.invalidate();
+        }
+        if (count > 0) {
+            choreographer.postFrameCallback(frameCallback);
+            frameScheduled = true;
+        }
+    }
+
+    private void move(int from, int to) {
+        targets[to] = targets[from];
+        properties[to] = properties[from];
+        fromValues[to] = fromValues[from];
+        toValues[to] = toValues[from];
+        fromColors[to] = fromColors[from];
+        toColors[to] = toColors[from];
+        delays[to] = delays[from];
+        durations[to] = durations[from];
+        startTimes[to] = startTimes[from];
+        interpolators[to] = interpolators[from];
+    }
+
+    private void apply(int index, float fraction) {
+        final Object target = targets[index];
+        final int property = properties[index];
+        if (property == FILL_COLOR || property == STROKE_COLOR) {
+            final int color = evaluateColor(fromColors[index], toColors[index], fraction);
+            final VectorDrawableCompat.VFullPath path = (VectorDrawableCompat.VFullPath) target;
+            if (property == FILL_COLOR) {
+                path.setFillColor(color);
+            } else {
+                path.setStrokeColor(color);
+            }
+            return;
+        }
+
+        final float value = fromValues[index] + (toValues[index] - fromValues[index]) * fraction;
+        switch (property) {
+            case ROTATION:
+                ((VectorDrawableCompat.VGroup) target).setRotation(value);
+                break;
+            case PIVOT_X:
+                ((VectorDrawableCompat.VGroup) target).setPivotX(value);
+                break;
+            case PIVOT_Y:
+                ((VectorDrawableCompat.VGroup) target).setPivotY(value);
+                break;
+            case SCALE_X:
+                ((VectorDrawableCompat.VGroup) target).setScaleX(value);
+                break;
+            case SCALE_Y:
+                ((VectorDrawableCompat.VGroup) target).setScaleY(value);
+                break;
+            case TRANSLATE_X:
+                ((VectorDrawableCompat.VGroup) target).setTranslateX(value);
+                break;
+            case TRANSLATE_Y:
+                ((VectorDrawableCompat.VGroup) target).setTranslateY(value);
+                break;
+            case FILL_ALPHA:
+                ((VectorDrawableCompat.VFullPath) target).setFillAlpha(value);
+                break;
+            case STROKE_ALPHA:
+                ((VectorDrawableCompat.VFullPath) target).setStrokeAlpha(value);
+                break;
+            case STROKE_WIDTH:
+                ((VectorDrawableCompat.VFullPath) target).setStrokeWidth(value);
+                break;
+            case TRIM_PATH_START:
+                ((VectorDrawableCompat.VFullPath) target).setTrimPathStart(value);
+                break;
+            case TRIM_PATH_END:
+                ((VectorDrawableCompat.VFullPath) target).setTrimPathEnd(value);
+                break;
+            case TRIM_PATH_OFFSET:
+                ((VectorDrawableCompat.VFullPath) target).setTrimPathOffset(value);
+                break;
+            case MORPH_FRACTION:
+                ((VectorDrawableCompat.VFullPath) target).setMorphFraction(value);
+                break;
+        }
+    }
+
+    private static int evaluateColor(int from, int to, float fraction) {
+        return Color.argb(
+                Math.round(Color.alpha(from) + (Color.alpha(to) - Color.alpha(from)) * fraction),
+                Math.round(Color.red(from) + (Color.red(to) - Color.red(from)) * fraction),
+                Math.round(Color.green(from) + (Color.green(to) - Color.green(from)) * fraction),
+                Math.round(Color.blue(from) + (Color.blue(to) - Color.blue(from)) * fraction));
+    }
+}
@@ -1,8 +1,17 @@
 package com.devs.vectorchildfinder;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.widget.ImageView;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
 /**
  * Created by ${Deven} on 2/1/18.
  * PorterDuffColorFilter porterDuffColorFilter = new PorterDuffColorFilter(Color.BLUE, PorterDuff.Mode.SRC_ATOP);
@@ -12,6 +21,12 @@ import android.widget.ImageView;
 public class VectorChildFinder {
 
     private VectorDrawableCompat vectorDrawable;
+    private ImageView imageView;
+    private final RectF dirtyRect = new RectF();
+    private final Matrix inverseImageMatrix = new Matrix();
+    private final float[] hitPoint = new float[2];
+    private int transactionDepth;
+    private VectorAnimator animator;
 
     /**
      * @param context Your Activity Context
@@ -19,10 +34,34 @@ public class VectorChildFinder {
      * @param imageView ImaveView that are showing vector drawable
      */
     public VectorChildFinder(Context context, int vectorRes, ImageView imageView) {
+        VectorDrawableCompat.registerStateCacheTrimming(context);
         vectorDrawable = VectorDrawableCompat.create(context.getResources(),
                 vectorRes, null);
-        vectorDrawable.setAllowCaching(false);
         imageView.setImageDrawable(vectorDrawable);
+        this.imageView = imageView;
+    }
+
+    /**
+     * @param vectorFile File written by VectorDrawableCompat.writeBinary(), which loads
+     *                   faster than the vector drawable resource
+     * @param imageView ImaveView that are showing vector drawable
+     * @throws IOException if the file can't be read or was not written by writeBinary()
+     */
+    public VectorChildFinder(File vectorFile, ImageView imageView) throws IOException {
+        vectorDrawable = VectorDrawableCompat.createFromBinary(vectorFile);
+        imageView.setImageDrawable(vectorDrawable);
+        this.imageView = imageView;
+    }
+
+    /**
+     * @param vectorBuffer Content written by VectorDrawableCompat.writeBinary()
+     * @param imageView ImaveView that are showing vector drawable
+     * @throws IOException if the content was not written by writeBinary()
+     */
+    public VectorChildFinder(ByteBuffer vectorBuffer, ImageView imageView) throws IOException {
+        vectorDrawable = VectorDrawableCompat.createFromBinary(vectorBuffer);
+        imageView.setImageDrawable(vectorDrawable);
+        this.imageView = imageView;
     }
 
 
@@ -43,4 +82,143 @@ public class VectorChildFinder {
         return (VectorDrawableCompat.VGroup) vectorDrawable.getTargetByName(groupName);
     }
 
+
+    /**
+     * Finds the path drawn under a point of the ImageView, for example the one under a touch
+     * event. Paths hidden under other paths or clipped out of the ImageView are not found.
+     *
+     * @param x X coordinate in the ImageView, like MotionEvent.getX()
+     * @param y Y coordinate in the ImageView, like MotionEvent.getY()
+     * @return A Object type of VectorDrawableCompat.VFullPath, or null if there is no path
+     * under the point
+     */
+    public VectorDrawableCompat.VFullPath findPathAt(float x, float y) {
+        if (x < imageView.getPaddingLeft() || y < imageView.getPaddingTop()
+                || x >= imageView.getWidth() - imageView.getPaddingRight()
+                || y >= imageView.getHeight() - imageView.getPaddingBottom()
+                || !imageView.getImageMatrix().invert(inverseImageMatrix)) {
+            return null;
+        }
+        hitPoint[0] = x - imageView.getPaddingLeft() + imageView.getScrollX();
+        hitPoint[1] = y - imageView.getPaddingTop() + imageView.getScrollY();
+        inverseImageMatrix.mapPoints(hitPoint);
+        return vectorDrawable.findPathAt(hitPoint[0], hitPoint[1]);
+    }
+
+
+    /**
+     * @return The animator driving the paths and groups of this vector drawable
+     */
+    public VectorAnimator getAnimator() {
+        if (animator == null) {
+            animator = new VectorAnimator(this);
+        }
+        return animator;
+    }
+
+
+    VectorDrawableCompat getVectorDrawable() {
+        return vectorDrawable;
+    }
+
+
+    /**
+     * @param renderMode One of the VectorDrawableCompat.RENDER_MODE_* constants
+     */
+    public void setRenderMode(int renderMode) {
+        vectorDrawable.setRenderMode(renderMode);
+    }
+
+
+    /**
+     * @param config Config of the bitmap caching the drawable, null to let the drawable pick
+     *               the cheapest one. See VectorDrawableCompat.setBitmapConfig()
+     */
+    public void setBitmapConfig(Bitmap.Config config) {
+        vectorDrawable.setBitmapConfig(config);
+    }
+
+
+    /**
+     * @param coverageCaching Whether to cache the coverage of each path, so that changing
+     *                        the colours of a path does not rasterize it again.
+     *                        See VectorDrawableCompat.setCoverageCaching()
+     */
+    public void setCoverageCaching(boolean coverageCaching) {
+        vectorDrawable.setCoverageCaching(coverageCaching);
+    }
+
+
+    /**
+     * @param executor Executor rasterizing the changes of the drawable off the UI thread,
+     *                 null to rasterize while drawing.
+     *                 See VectorDrawableCompat.setRasterizationExecutor()
+     */
+    public void setRasterizationExecutor(Executor executor) {
+        vectorDrawable.setRasterizationExecutor(executor);
+    }
+
+
+    /**
+     * Parses the path data of all the paths ahead of their first draw. Paths are otherwise
+     * parsed when they are first drawn or accessed, it can be called on a background thread.
+     * See VectorDrawableCompat.warmUp()
+     */
+    public void warmUp() {
+        vectorDrawable.warmUp();
+    }
+
+
+    /**
+     * Starts a batch of changes to the paths and groups. Until the matching
+     * commitTransaction(), the ImageView keeps showing the drawable as it was, and
+     * nothing is recomputed. Transactions can be nested.
+     * When there is no previous frame to show, e.g. before the first draw, after a change
+     * of render mode, or when the visible tiles of RENDER_MODE_TILED aren't all cached,
+     * the drawable is drawn with the changes made so far.
+     */
+    public void beginTransaction() {
+        if (transactionDepth++ == 0) {
+            vectorDrawable.setUpdatesSuspended(true);
+        }
+    }
+
+
+    /**
+     * Ends the batch of changes started by beginTransaction(). The outermost commit
+     * invalidates the ImageView once for all the changes, there is no need to call
+     * invalidate() or imageView.invalidate().
+     */
+    public void commitTransaction() {
+        if (transactionDepth == 0) {
+            throw new IllegalStateException("commitTransaction() without beginTransaction()");
+        }
+        if (--transactionDepth == 0) {
+            vectorDrawable.setUpdatesSuspended(false);
+            invalidate();
+        }
+    }
+
+
+    /**
+     * Invalidates only the area of the ImageView covered by the paths and groups
+     * changed since the last draw. Use it instead of imageView.invalidate().
+     * Does nothing inside a transaction, the commit invalidates instead.
+     */
+    public void invalidate() {
+        if (transactionDepth > 0) {
+            return;
+        }
+        final Rect dirty = vectorDrawable.getChangedBounds();
+        if (dirty.isEmpty()) {
+            return;
+        }
+        dirtyRect.set(dirty);
+        imageView.getImageMatrix().mapRect(dirtyRect);
+        // View.invalidate(l, t, r, b) takes content coordinates and subtracts the scroll.
+        dirtyRect.offset(imageView.getPaddingLeft(), imageView.getPaddingTop());
+        imageView.invalidate((int) Math.floor(dirtyRect.left), (int) Math.floor(dirtyRect.top),
+                (int) Math.ceil(dirtyRect.right), (int) Math.ceil(dirtyRect.bottom));
+    }
+
 }
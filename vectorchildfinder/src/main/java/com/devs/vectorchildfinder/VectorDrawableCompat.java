@@ -21,7 +21,10 @@ package com.devs.vectorchildfinder;
 import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
 
 import android.annotation.SuppressLint;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
@@ -32,13 +35,19 @@ import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PathMeasure;
+import android.graphics.Picture;
 import android.graphics.PixelFormat;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffColorFilter;
 import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Region;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.VectorDrawable;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.LayoutDirection;
 import android.util.Log;
@@ -55,9 +64,26 @@ import androidx.core.graphics.drawable.DrawableCompat;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 
 public class VectorDrawableCompat extends VectorDrawableCommon {
@@ -65,6 +91,42 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
 
     static final PorterDuff.Mode DEFAULT_TINT_MODE = PorterDuff.Mode.SRC_IN;
 
+    /**
+     * Render mode which rasterizes the whole tree into a single cached bitmap.
+     */
+    public static final int RENDER_MODE_BITMAP = 0;
+
+    /**
+     * Render mode which splits the draw order into runs of static paths and runs of paths
+     * mutated at runtime, each cached in its own bitmap. A change only re-rasterizes the
+     * area it covers in the layers holding the changed paths, and composes that area again.
+     * It keeps up to 6 full size bitmaps, 5 layers and their composite.
+     */
+    public static final int RENDER_MODE_LAYERED = 1;
+
+    /**
+     * Render mode which records the tree into a {@link Picture} and replays it on the target
+     * canvas, without any intermediate bitmap. The recording is only redone when the tree
+     * changes. Suited to large drawables which are rarely mutated. Below API 23, hardware
+     * accelerated canvases can't draw pictures, so it falls back to RENDER_MODE_BITMAP there.
+     */
+    public static final int RENDER_MODE_PICTURE = 2;
+
+    /**
+     * Render mode which splits the scaled image into tiles, only rasterizing the tiles visible
+     * in the canvas clip and keeping the most recently used ones. Unlike the other modes, the
+     * image isn't limited to MAX_CACHED_BITMAP_SIZE, so it stays sharp on zoomed canvases. A
+     * change only re-rasterizes the tiles overlapping the changed paths.
+     */
+    public static final int RENDER_MODE_TILED = 3;
+
+    /**
+     * Render mode which behaves like RENDER_MODE_BITMAP once the canvas scale is stable. While
+     * the scale keeps changing, e.g. during a pinch-zoom, it draws the closest of the images
+     * cached at power of two scales instead of rasterizing every frame at the exact scale.
+     */
+    public static final int RENDER_MODE_MIPMAP = 4;
+
     private static final String SHAPE_CLIP_PATH = "clip-path";
     private static final String SHAPE_GROUP = "group";
     private static final String SHAPE_PATH = "path";
@@ -82,9 +144,36 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
     // and it won't crash due to a very large scale.
     // The drawable will look blurry above this size.
     private static final int MAX_CACHED_BITMAP_SIZE = 2048;
+    // The cached bitmaps are allocated in steps of at least this many pixels, see
+    // getBucketSize().
+    private static final int MIN_BITMAP_SIZE_STEP = 32;
+    // Size of the tiles of RENDER_MODE_TILED, and the number of tiles kept in addition to the
+    // visible ones.
+    private static final int TILE_SIZE = 256;
+    private static final int EXTRA_CACHED_TILES = 16;
+    // Range of the power of two scales cached by RENDER_MODE_MIPMAP, and the time the canvas
+    // scale needs to stay the same before the exact scale is rasterized.
+    private static final int MIN_MIP_LEVEL = -3;
+    private static final int MAX_MIP_LEVEL = 4;
+    // Number of mip levels kept, the least recently drawn ones are released first.
+    private static final int MAX_KEPT_MIP_LEVELS = 2;
+    private static final long SCALE_SETTLE_DELAY_MS = 150;
 
     private static final boolean DBG_VECTOR_DRAWABLE = false;
 
+    // Parsed trees of the resources inflated by create(), in least recently used order.
+    // They are never drawn or changed, create() returns copies of them.
+    private static final int MAX_CACHED_STATES = 32;
+    private static final LinkedHashMap<StateCacheKey, VectorDrawableCompatState> sStateCache =
+            new LinkedHashMap<StateCacheKey, VectorDrawableCompatState>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<StateCacheKey, VectorDrawableCompatState> eldest) {
+                    return size() > MAX_CACHED_STATES;
+                }
+            };
+    private static boolean sStateCacheTrimmingRegistered;
+
     private VectorDrawableCompatState mVectorState;
 
     private PorterDuffColorFilter mTintFilter;
@@ -96,6 +185,10 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
     // caching the bitmap by default is allowed.
     private boolean mAllowCaching = true;
 
+    // Set while a VectorChildFinder transaction is open, the cached bitmap then keeps showing
+    // the state of the tree from before the transaction.
+    private boolean mUpdatesSuspended;
+
     // The Constant state associated with the <code>mDelegateDrawable</code>.
     private ConstantState mCachedConstantStateDelegate;
 
@@ -103,6 +196,18 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
     private final float[] mTmpFloats = new float[9];
     private final Matrix mTmpMatrix = new Matrix();
     private final Rect mTmpBounds = new Rect();
+    private final Rect mDirtyBounds = new Rect();
+
+    // Only used by RENDER_MODE_MIPMAP, the scaled size of the last draw and when it changed.
+    private int mLastScaledWidth;
+    private int mLastScaledHeight;
+    private long mScaleChangeTime;
+    private final Runnable mScaleSettledRunnable = new Runnable() {
+        @Override
+        public void run() {
+            invalidateSelf();
+        }
+    };
 
     VectorDrawableCompat() {
         mVectorState = new VectorDrawableCompatState();
@@ -178,8 +283,10 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
 
         int scaledWidth = (int) (mTmpBounds.width() * canvasScaleX);
         int scaledHeight = (int) (mTmpBounds.height() * canvasScaleY);
-        scaledWidth = Math.min(MAX_CACHED_BITMAP_SIZE, scaledWidth);
-        scaledHeight = Math.min(MAX_CACHED_BITMAP_SIZE, scaledHeight);
+        if (mVectorState.mRenderMode != RENDER_MODE_TILED) {
+            scaledWidth = Math.min(MAX_CACHED_BITMAP_SIZE, scaledWidth);
+            scaledHeight = Math.min(MAX_CACHED_BITMAP_SIZE, scaledHeight);
+        }
 
         if (scaledWidth <= 0 || scaledHeight <= 0) {
             return;
@@ -200,19 +307,132 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         // we offset to (0, 0);
         mTmpBounds.offsetTo(0, 0);
 
+        // Keep showing the last frame until the transaction is committed, so that a half
+        // applied batch of changes is never drawn.
+        if (mUpdatesSuspended && mVectorState.drawLastFrame(canvas, colorFilter, mTmpBounds,
+                scaledWidth, scaledHeight, canDrawPicture(canvas))) {
+            canvas.restoreToCount(saveCount);
+            return;
+        }
+
+        if (mVectorState.mRenderMode == RENDER_MODE_PICTURE && canDrawPicture(canvas)) {
+            mVectorState.drawCachedPicture(canvas, colorFilter, mTmpBounds, mAllowCaching);
+            canvas.restoreToCount(saveCount);
+            return;
+        }
+
+        if (mVectorState.mRenderMode == RENDER_MODE_MIPMAP
+                && !isScaleSettled(scaledWidth, scaledHeight)) {
+            mVectorState.drawMipLevel(canvas, colorFilter, mTmpBounds,
+                    Math.max(canvasScaleX, canvasScaleY));
+            canvas.restoreToCount(saveCount);
+            return;
+        }
+
+        if (mVectorState.mRenderMode == RENDER_MODE_TILED) {
+            mVectorState.drawTiles(canvas, colorFilter, mTmpBounds, scaledWidth, scaledHeight,
+                    mAllowCaching);
+            canvas.restoreToCount(saveCount);
+            return;
+        }
+
+        if (mAllowCaching && mVectorState.canDrawHardwareBitmap(canvas, scaledWidth,
+                scaledHeight)) {
+            mVectorState.drawCachedBitmapWithRootAlpha(canvas, colorFilter, mTmpBounds);
+            canvas.restoreToCount(saveCount);
+            return;
+        }
+
+        if (mAllowCaching && mVectorState.mRasterExecutor != null
+                && mVectorState.mRenderMode == RENDER_MODE_BITMAP
+                && mVectorState.drawAsync(this, canvas, colorFilter, mTmpBounds, scaledWidth,
+                scaledHeight)) {
+            canvas.restoreToCount(saveCount);
+            return;
+        }
+
         mVectorState.createCachedBitmapIfNeeded(scaledWidth, scaledHeight);
         if (!mAllowCaching) {
             mVectorState.updateCachedBitmap(scaledWidth, scaledHeight);
         } else {
             if (!mVectorState.canReuseCache()) {
-                mVectorState.updateCachedBitmap(scaledWidth, scaledHeight);
+                if (mVectorState.canUpdateDirtyRect()) {
+                    mVectorState.updateCachedBitmapDirtyRect(scaledWidth, scaledHeight);
+                } else {
+                    mVectorState.updateCachedBitmap(scaledWidth, scaledHeight);
+                }
                 mVectorState.updateCacheStates();
+            } else if (canvas.isHardwareAccelerated()) {
+                // Nothing changed since the last frame.
+                mVectorState.createHardwareBitmapIfNeeded();
             }
         }
         mVectorState.drawCachedBitmapWithRootAlpha(canvas, colorFilter, mTmpBounds);
         canvas.restoreToCount(saveCount);
     }
 
+    /**
+     * @return whether the canvas scale stopped changing, or the exact size was already
+     * rasterized. Otherwise, a redraw is scheduled for when the scale will have settled.
+     */
+    private boolean isScaleSettled(int scaledWidth, int scaledHeight) {
+        final VectorDrawableCompatState state = mVectorState;
+        // The cached size is kept while a hardware copy replaces the software bitmap, and
+        // is 0 until the first exact rasterization.
+        if (scaledWidth == state.mCachedWidth && scaledHeight == state.mCachedHeight) {
+            mLastScaledWidth = scaledWidth;
+            mLastScaledHeight = scaledHeight;
+            return true;
+        }
+        final long now = SystemClock.uptimeMillis();
+        if (scaledWidth != mLastScaledWidth || scaledHeight != mLastScaledHeight) {
+            mLastScaledWidth = scaledWidth;
+            mLastScaledHeight = scaledHeight;
+            mScaleChangeTime = now;
+            unscheduleSelf(mScaleSettledRunnable);
+            scheduleSelf(mScaleSettledRunnable, now + SCALE_SETTLE_DELAY_MS);
+            return false;
+        }
+        return now - mScaleChangeTime >= SCALE_SETTLE_DELAY_MS;
+    }
+
+    /**
+     * Unlike {@link #getDirtyBounds()}, which keeps the default implementation since hosts
+     * also invalidate for colour filter, tint or bounds changes that the tree doesn't track,
+     * this only covers the changes of the tree. Only VectorChildFinder.invalidate() uses it.
+     *
+     * @return the area of the bounds covered by the paths and groups changed since the last
+     * draw, empty when none changed, or the whole bounds when the cached bitmap will be fully
+     * redrawn.
+     */
+    Rect getChangedBounds() {
+        final Rect bounds = getBounds();
+        if (mDelegateDrawable != null) {
+            return bounds;
+        }
+        if (!mAllowCaching || bounds.isEmpty() || !(mVectorState.canUpdateDirtyRect()
+                || mVectorState.mRenderMode == RENDER_MODE_TILED)) {
+            return bounds;
+        }
+        final VPathRenderer renderer = mVectorState.mVPathRenderer;
+        renderer.updateTree();
+        if (!renderer.getDirtyRect(bounds.width(), bounds.height(), mDirtyBounds)) {
+            mDirtyBounds.setEmpty();
+            return mDirtyBounds;
+        }
+        if (needMirroring()) {
+            final int left = mDirtyBounds.left;
+            mDirtyBounds.left = bounds.width() - mDirtyBounds.right;
+            mDirtyBounds.right = bounds.width() - left;
+        }
+        mDirtyBounds.offset(bounds.left, bounds.top);
+        return mDirtyBounds;
+    }
+
+    private static boolean canDrawPicture(Canvas canvas) {
+        return Build.VERSION.SDK_INT >= 23 || !canvas.isHardwareAccelerated();
+    }
+
     @Override
     public int getAlpha() {
         if (mDelegateDrawable != null) {
@@ -405,12 +625,17 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
     }
 
     /**
-     * Create a VectorDrawableCompat object.
+     * Create a VectorDrawableCompat object. The resource is only parsed the first time, the
+     * following calls with the same resource, configuration and theme copy the parsed tree
+     * kept in a process-wide cache, see {@link #trimStateCache(int)}.
      *
      * @param res   the resources.
      * @param resId the resource ID for VectorDrawableCompat object.
      * @param theme the theme of this vector drawable, it can be null.
      * @return a new VectorDrawableCompat or null if parsing error is found.
+     * @throws RuntimeException if some path data contains an invalid character. The path
+     * data is only parsed when first used, so a malformed number made of valid characters
+     * is thrown by the first draw or by {@link #warmUp()} instead.
      */
     @Nullable
     public static VectorDrawableCompat create(@NonNull Resources res, @DrawableRes int resId,
@@ -423,6 +648,17 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
 //            return drawable;
 //        }
 
+        final StateCacheKey key = new StateCacheKey(res, resId, theme);
+        VectorDrawableCompatState prototype;
+        synchronized (sStateCache) {
+            prototype = sStateCache.get(key);
+        }
+        if (prototype != null) {
+            final VectorDrawableCompatState state = new VectorDrawableCompatState(prototype);
+            state.mCacheDirty = true;
+            return new VectorDrawableCompat(state);
+        }
+
         try {
             final XmlPullParser parser = res.getXml(resId);
             final AttributeSet attrs = Xml.asAttributeSet(parser);
@@ -434,7 +670,13 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             if (type != XmlPullParser.START_TAG) {
                 throw new XmlPullParserException("No start tag found");
             }
-            return createFromXmlInner(res, parser, attrs, theme);
+            final VectorDrawableCompat drawable = createFromXmlInner(res, parser, attrs, theme);
+            // Keep a copy, since the returned drawable may be changed.
+            prototype = new VectorDrawableCompatState(drawable.mVectorState);
+            synchronized (sStateCache) {
+                sStateCache.put(key, prototype);
+            }
+            return drawable;
         } catch (XmlPullParserException e) {
             Log.e(LOGTAG, "parser error", e);
         } catch (IOException e) {
@@ -443,6 +685,103 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         return null;
     }
 
+    /**
+     * Drops parsed trees from the cache used by {@link #create(Resources, int,
+     * Resources.Theme)}, depending on the level passed to
+     * {@link ComponentCallbacks2#onTrimMemory(int)}. VectorChildFinder calls it on its own.
+     */
+    public static void trimStateCache(int level) {
+        synchronized (sStateCache) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                sStateCache.clear();
+                return;
+            }
+            // Keep the most recently used half.
+            int evicted = sStateCache.size() / 2;
+            final Iterator<StateCacheKey> it = sStateCache.keySet().iterator();
+            while (evicted-- > 0) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Makes the application trim the state cache when the system runs low on memory.
+     */
+    static void registerStateCacheTrimming(Context context) {
+        synchronized (sStateCache) {
+            if (sStateCacheTrimmingRegistered) {
+                return;
+            }
+            sStateCacheTrimmingRegistered = true;
+        }
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimStateCache(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                trimStateCache(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+            }
+        });
+    }
+
+    /**
+     * Identifies the parsed tree of a resource: the colours and dimensions it resolves
+     * depend on the whole configuration (density, night mode, orientation, layout direction,
+     * locale, smallest width...) and on the theme.
+     */
+    private static final class StateCacheKey {
+        private final int mResId;
+        private final int mDensityDpi;
+        private final Configuration mConfiguration;
+        // Compared by identity, and not held on to. A theme changed with applyStyle() after
+        // a drawable was created from it needs trimStateCache() to be taken into account.
+        private final WeakReference<Resources.Theme> mTheme;
+        private final int mThemeHash;
+
+        StateCacheKey(Resources res, int resId, Resources.Theme theme) {
+            mResId = resId;
+            mDensityDpi = res.getDisplayMetrics().densityDpi;
+            mConfiguration = new Configuration(res.getConfiguration());
+            mTheme = theme != null ? new WeakReference<Resources.Theme>(theme) : null;
+            mThemeHash = System.identityHashCode(theme);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof StateCacheKey)) {
+                return false;
+            }
+            final StateCacheKey other = (StateCacheKey) o;
+            if (mResId != other.mResId || mDensityDpi != other.mDensityDpi
+                    || mThemeHash != other.mThemeHash
+                    || !mConfiguration.equals(other.mConfiguration)) {
+                return false;
+            }
+            if (mTheme == null || other.mTheme == null) {
+                return mTheme == other.mTheme;
+            }
+            // A collected theme matches nothing, its entry is then evicted as least recently
+            // used.
+            final Resources.Theme theme = mTheme.get();
+            return theme != null && theme == other.mTheme.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return ((mResId * 31 + mDensityDpi) * 31 + mConfiguration.hashCode()) * 31
+                    + mThemeHash;
+        }
+    }
+
     /**
      * Create a VectorDrawableCompat from inside an XML document using an optional
      * {@link Resources.Theme}. Called on a parser positioned at a tag in an XML
@@ -457,6 +796,327 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         return drawable;
     }
 
+    // Binary format written by writeBinary(), big endian:
+    //   int BINARY_MAGIC, int BINARY_VERSION
+    //   float width and height in pixels, as resolved by the Resources the drawable was
+    //   created with, float viewportWidth and viewportHeight, int rootAlpha
+    //   byte autoMirrored, byte hasTint followed by int tint if set, string tintMode
+    //   string name, and the children of the root group, see writeBinaryChildren().
+    // Strings are an int UTF-8 length, -1 for null, followed by the bytes.
+    private static final int BINARY_MAGIC = 0x56434642;
+    private static final int BINARY_VERSION = 2;
+    // Deepest group nesting read, deeper content is rejected rather than overflowing the stack.
+    private static final int MAX_BINARY_DEPTH = 64;
+    private static final byte BINARY_GROUP = 0;
+    private static final byte BINARY_CLIP_PATH = 1;
+    private static final byte BINARY_FULL_PATH = 2;
+    private static final Charset BINARY_CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * Create a VectorDrawableCompat from a file written by {@link #writeBinary(OutputStream)}.
+     * The file is memory mapped, and the path data is read as is instead of being parsed,
+     * which makes it much faster than inflating the XML resource.
+     *
+     * @param file the file written by writeBinary().
+     * @return a new VectorDrawableCompat.
+     * @throws IOException if the file can't be read or is not in the binary format.
+     */
+    @NonNull
+    public static VectorDrawableCompat createFromBinary(@NonNull File file) throws IOException {
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            final FileChannel channel = in.getChannel();
+            // The mapping stays valid once the channel is closed.
+            return createFromBinary(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Create a VectorDrawableCompat from the content written by
+     * {@link #writeBinary(OutputStream)}, starting at the position of the buffer.
+     *
+     * @throws IOException if the content is not in the binary format.
+     */
+    @NonNull
+    public static VectorDrawableCompat createFromBinary(@NonNull ByteBuffer buffer)
+            throws IOException {
+        buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        try {
+            if (buffer.getInt() != BINARY_MAGIC || buffer.getInt() != BINARY_VERSION) {
+                throw new IOException("Not a vector drawable binary");
+            }
+            final VectorDrawableCompat drawable = new VectorDrawableCompat();
+            final VectorDrawableCompatState state = drawable.mVectorState;
+            final VPathRenderer pathRenderer = new VPathRenderer();
+            state.mVPathRenderer = pathRenderer;
+
+            pathRenderer.mBaseWidth = buffer.getFloat();
+            pathRenderer.mBaseHeight = buffer.getFloat();
+            pathRenderer.mViewportWidth = buffer.getFloat();
+            pathRenderer.mViewportHeight = buffer.getFloat();
+            pathRenderer.setRootAlpha(buffer.getInt());
+            state.mAutoMirrored = buffer.get() != 0;
+            if (buffer.get() != 0) {
+                state.mTint = ColorStateList.valueOf(buffer.getInt());
+            }
+            final String tintMode = readBinaryString(buffer);
+            if (tintMode == null) {
+                throw new IllegalArgumentException("Missing tint mode");
+            }
+            state.mTintMode = PorterDuff.Mode.valueOf(tintMode);
+            final String name = readBinaryString(buffer);
+            if (name != null) {
+                pathRenderer.mRootName = name;
+                pathRenderer.mVGTargetsMap.put(name, pathRenderer);
+            }
+            readBinaryChildren(buffer, pathRenderer.mRootGroup, pathRenderer, 0);
+            pathRenderer.mRootGroup.setOwner(pathRenderer);
+
+            state.mCacheDirty = true;
+            drawable.mTintFilter = drawable.updateTintFilter(drawable.mTintFilter, state.mTint,
+                    state.mTintMode);
+            return drawable;
+        } catch (BufferUnderflowException | IllegalArgumentException
+                | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            // The readers validate what they can, these are kept for truncated content.
+            throw new IOException("Malformed vector drawable binary", e);
+        }
+    }
+
+    /**
+     * Checks a count read from the buffer before anything is allocated for it, so that
+     * corrupted content fails with an IOException rather than running out of memory.
+     *
+     * @param minItemSize the number of bytes each item takes at least in the buffer.
+     */
+    private static int checkBinaryCount(ByteBuffer buffer, int count, int minItemSize) {
+        if (count < 0 || count > buffer.remaining() / minItemSize) {
+            throw new IllegalArgumentException("Invalid count " + count);
+        }
+        return count;
+    }
+
+    private static int readBinaryOrdinal(ByteBuffer buffer, int valueCount) {
+        final byte ordinal = buffer.get();
+        if (ordinal < 0 || ordinal >= valueCount) {
+            throw new IllegalArgumentException("Invalid ordinal " + ordinal);
+        }
+        return ordinal;
+    }
+
+    private static void readBinaryChildren(ByteBuffer buffer, VGroup group,
+                                           VPathRenderer pathRenderer, int depth) {
+        if (depth > MAX_BINARY_DEPTH) {
+            throw new IllegalArgumentException("Groups nested too deep");
+        }
+        // Each child has at least a type and a name length.
+        final int childCount = checkBinaryCount(buffer, buffer.getInt(), 5);
+        group.mChildren.ensureCapacity(childCount);
+        for (int i = 0; i < childCount; i++) {
+            final byte type = buffer.get();
+            final String name = readBinaryString(buffer);
+            final Object child;
+            if (type == BINARY_GROUP) {
+                final VGroup childGroup = new VGroup();
+                childGroup.mGroupName = name;
+                childGroup.mRotate = buffer.getFloat();
+                childGroup.mPivotX = buffer.getFloat();
+                childGroup.mPivotY = buffer.getFloat();
+                childGroup.mScaleX = buffer.getFloat();
+                childGroup.mScaleY = buffer.getFloat();
+                childGroup.mTranslateX = buffer.getFloat();
+                childGroup.mTranslateY = buffer.getFloat();
+                readBinaryChildren(buffer, childGroup, pathRenderer, depth + 1);
+                child = childGroup;
+            } else if (type == BINARY_CLIP_PATH || type == BINARY_FULL_PATH) {
+                final VPath path = type == BINARY_CLIP_PATH ? new VClipPath() : new VFullPath();
+                path.mPathName = name;
+                path.mNodes = readBinaryNodes(buffer);
+                if (type == BINARY_FULL_PATH) {
+                    final VFullPath fullPath = (VFullPath) path;
+                    fullPath.mFillColor = buffer.getInt();
+                    fullPath.mFillAlpha = buffer.getFloat();
+                    fullPath.mFillRule = buffer.getInt();
+                    fullPath.mStrokeColor = buffer.getInt();
+                    fullPath.mStrokeAlpha = buffer.getFloat();
+                    fullPath.mStrokeWidth = buffer.getFloat();
+                    final Paint.Cap[] caps = Paint.Cap.values();
+                    fullPath.mStrokeLineCap = caps[readBinaryOrdinal(buffer, caps.length)];
+                    final Paint.Join[] joins = Paint.Join.values();
+                    fullPath.mStrokeLineJoin = joins[readBinaryOrdinal(buffer, joins.length)];
+                    fullPath.mStrokeMiterlimit = buffer.getFloat();
+                    fullPath.mTrimPathStart = buffer.getFloat();
+                    fullPath.mTrimPathEnd = buffer.getFloat();
+                    fullPath.mTrimPathOffset = buffer.getFloat();
+                }
+                child = path;
+            } else {
+                throw new IllegalArgumentException("Unknown node type " + type);
+            }
+            group.mChildren.add(child);
+            if (name != null) {
+                pathRenderer.mVGTargetsMap.put(name, child);
+            }
+        }
+    }
+
+    /**
+     * Reads the int node count, -1 for no path data, the byte type and int parameter count
+     * of each node, and then all the float parameters in one bulk read.
+     */
+    private static PathParser.PathDataNode[] readBinaryNodes(ByteBuffer buffer) {
+        final int storedCount = buffer.getInt();
+        if (storedCount == -1) {
+            return null;
+        }
+        // Each node has at least a type and a parameter count.
+        final int nodeCount = checkBinaryCount(buffer, storedCount, 5);
+        final int typesStart = buffer.position();
+        final int countsStart = typesStart + nodeCount;
+        buffer.position(countsStart + 4 * nodeCount);
+        long totalParamCount = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            final int count = buffer.getInt(countsStart + 4 * i);
+            // Malformed nodes would otherwise only fail once drawn.
+            if (count < 0 || !PathParser.isValidNode((char) buffer.get(typesStart + i), count)) {
+                throw new IllegalArgumentException("Invalid node " + i);
+            }
+            totalParamCount += count;
+        }
+        if (totalParamCount > buffer.remaining() / 4) {
+            throw new IllegalArgumentException("Invalid parameter count " + totalParamCount);
+        }
+        final int paramCount = (int) totalParamCount;
+        final PathParser.PathDataNode[] nodes = new PathParser.PathDataNode[nodeCount];
+        final float[] params = new float[paramCount];
+        buffer.asFloatBuffer().get(params);
+        buffer.position(buffer.position() + 4 * paramCount);
+        int offset = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            final int count = buffer.getInt(countsStart + 4 * i);
+            nodes[i] = new PathParser.PathDataNode((char) buffer.get(typesStart + i),
+                    PathParser.copyOfRange(params, offset, offset + count));
+            offset += count;
+        }
+        return nodes;
+    }
+
+    private static String readBinaryString(ByteBuffer buffer) {
+        final int storedLength = buffer.getInt();
+        if (storedLength == -1) {
+            return null;
+        }
+        final int length = checkBinaryCount(buffer, storedLength, 1);
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, BINARY_CHARSET);
+    }
+
+    /**
+     * Writes the current tree of this drawable in the binary format read by
+     * {@link #createFromBinary(File)}, for example to precompile a vector drawable resource
+     * on the first launch. The theme attributes must have been resolved, and only the default
+     * colour of the tint is kept. The intrinsic size is written in pixels, so the content is
+     * only meant for the density of the Resources this drawable was created with.
+     */
+    public void writeBinary(@NonNull OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        final VectorDrawableCompatState state = mVectorState;
+        final VPathRenderer pathRenderer = state.mVPathRenderer;
+        data.writeInt(BINARY_MAGIC);
+        data.writeInt(BINARY_VERSION);
+        data.writeFloat(pathRenderer.mBaseWidth);
+        data.writeFloat(pathRenderer.mBaseHeight);
+        data.writeFloat(pathRenderer.mViewportWidth);
+        data.writeFloat(pathRenderer.mViewportHeight);
+        data.writeInt(pathRenderer.getRootAlpha());
+        data.writeByte(state.mAutoMirrored ? 1 : 0);
+        data.writeByte(state.mTint != null ? 1 : 0);
+        if (state.mTint != null) {
+            data.writeInt(state.mTint.getDefaultColor());
+        }
+        writeBinaryString(data, (state.mTintMode != null ? state.mTintMode
+                : DEFAULT_TINT_MODE).name());
+        writeBinaryString(data, pathRenderer.mRootName);
+        writeBinaryChildren(data, pathRenderer.mRootGroup);
+        data.flush();
+    }
+
+    private static void writeBinaryChildren(DataOutputStream data, VGroup group)
+            throws IOException {
+        data.writeInt(group.mChildren.size());
+        for (int i = 0; i < group.mChildren.size(); i++) {
+            final Object child = group.mChildren.get(i);
+            if (child instanceof VGroup) {
+                final VGroup childGroup = (VGroup) child;
+                data.writeByte(BINARY_GROUP);
+                writeBinaryString(data, childGroup.mGroupName);
+                data.writeFloat(childGroup.mRotate);
+                data.writeFloat(childGroup.mPivotX);
+                data.writeFloat(childGroup.mPivotY);
+                data.writeFloat(childGroup.mScaleX);
+                data.writeFloat(childGroup.mScaleY);
+                data.writeFloat(childGroup.mTranslateX);
+                data.writeFloat(childGroup.mTranslateY);
+                writeBinaryChildren(data, childGroup);
+                continue;
+            }
+            final VPath path = (VPath) child;
+            data.writeByte(path.isClipPath() ? BINARY_CLIP_PATH : BINARY_FULL_PATH);
+            writeBinaryString(data, path.mPathName);
+            writeBinaryNodes(data, path.getNodes());
+            if (!path.isClipPath()) {
+                final VFullPath fullPath = (VFullPath) path;
+                data.writeInt(fullPath.mFillColor);
+                data.writeFloat(fullPath.mFillAlpha);
+                data.writeInt(fullPath.mFillRule);
+                data.writeInt(fullPath.mStrokeColor);
+                data.writeFloat(fullPath.mStrokeAlpha);
+                data.writeFloat(fullPath.mStrokeWidth);
+                data.writeByte(fullPath.mStrokeLineCap.ordinal());
+                data.writeByte(fullPath.mStrokeLineJoin.ordinal());
+                data.writeFloat(fullPath.mStrokeMiterlimit);
+                data.writeFloat(fullPath.mTrimPathStart);
+                data.writeFloat(fullPath.mTrimPathEnd);
+                data.writeFloat(fullPath.mTrimPathOffset);
+            }
+        }
+    }
+
+    private static void writeBinaryNodes(DataOutputStream data, PathParser.PathDataNode[] nodes)
+            throws IOException {
+        if (nodes == null) {
+            data.writeInt(-1);
+            return;
+        }
+        data.writeInt(nodes.length);
+        for (PathParser.PathDataNode node : nodes) {
+            data.writeByte(node.type);
+        }
+        for (PathParser.PathDataNode node : nodes) {
+            data.writeInt(node.params.length);
+        }
+        for (PathParser.PathDataNode node : nodes) {
+            for (float param : node.params) {
+                data.writeFloat(param);
+            }
+        }
+    }
+
+    private static void writeBinaryString(DataOutputStream data, String string)
+            throws IOException {
+        if (string == null) {
+            data.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = string.getBytes(BINARY_CHARSET);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
     static int applyAlpha(int color, float alpha) {
         int alphaBytes = Color.alpha(color);
         color &= 0x00FFFFFF;
@@ -646,6 +1306,9 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             eventType = parser.next();
         }
 
+        // Every node reports its changes to the renderer that owns it.
+        pathRenderer.mRootGroup.setOwner(pathRenderer);
+
         // Print the tree out for debug.
         if (DBG_VECTOR_DRAWABLE) {
             printGroupTree(pathRenderer.mRootGroup, 0);
@@ -687,6 +1350,182 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         mAllowCaching = allowCaching;
     }
 
+    /**
+     * Caches the coverage of the fill and the stroke of each path in an ALPHA_8 mask, so that
+     * a path whose colour or alpha changed is composited again with a single drawBitmap()
+     * instead of being rasterized. Each mask costs a byte per pixel of the bounds of its path,
+     * paths larger than 2048 pixels are still drawn directly.
+     * <p>
+     * The masks are not used to record the picture of RENDER_MODE_PICTURE, since they would
+     * blur when it's replayed scaled, nor to rasterize the levels of RENDER_MODE_MIPMAP,
+     * since masks kept for a single size would be rasterized again at every level switch.
+     * The paths are then drawn directly.
+     */
+    public void setCoverageCaching(boolean coverageCaching) {
+        final VPathRenderer renderer = mVectorState.mVPathRenderer;
+        if (renderer.mCoverageCaching != coverageCaching) {
+            renderer.mCoverageCaching = coverageCaching;
+            if (!coverageCaching) {
+                renderer.releaseCoverageMasks();
+            }
+        }
+    }
+
+    public boolean isCoverageCaching() {
+        return mVectorState.mVPathRenderer.mCoverageCaching;
+    }
+
+    void setUpdatesSuspended(boolean updatesSuspended) {
+        mUpdatesSuspended = updatesSuspended;
+    }
+
+    /**
+     * Finds the topmost path painting a point, for example to know which path was touched.
+     *
+     * @param x X coordinate of the point, in the coordinates of the bounds of the drawable.
+     * @param y Y coordinate of the point, in the coordinates of the bounds of the drawable.
+     * @return the path, or null if no path paints the point.
+     */
+    public VFullPath findPathAt(float x, float y) {
+        final Rect bounds = getBounds();
+        final VPathRenderer renderer = mVectorState.mVPathRenderer;
+        if (x < bounds.left || y < bounds.top || x >= bounds.right || y >= bounds.bottom) {
+            return null;
+        }
+        x -= bounds.left;
+        y -= bounds.top;
+        if (needMirroring()) {
+            x = bounds.width() - x;
+        }
+        final float scaleX = bounds.width() / renderer.mViewportWidth;
+        final float scaleY = bounds.height() / renderer.mViewportHeight;
+        return renderer.findPathAt(x / scaleX, y / scaleY, Math.max(scaleX, scaleY));
+    }
+
+    /**
+     * Parses the path data of all the paths, which is otherwise deferred until a path is
+     * first drawn or its path data is accessed. It can be called on a background thread
+     * once the drawable is created, so that the first draw doesn't have to parse.
+     * <p>
+     * The first draw computes the bounds of every path which has a colour and isn't scaled
+     * to zero, so the paths outside the canvas are parsed then as well. Deferring only
+     * saves the parsing of the drawables which are never drawn, and of the other paths.
+     *
+     * @throws RuntimeException if some path data contains a malformed number, which
+     * create() only reports for invalid characters. The first draw throws it otherwise.
+     */
+    public void warmUp() {
+        warmUpGroup(mVectorState.mVPathRenderer.mRootGroup);
+    }
+
+    private static void warmUpGroup(VGroup group) {
+        for (int i = 0; i < group.mChildren.size(); i++) {
+            final Object child = group.mChildren.get(i);
+            if (child instanceof VGroup) {
+                warmUpGroup((VGroup) child);
+                continue;
+            }
+            // Only the shared holder is touched, the path picks the nodes up on first use.
+            final LazyPathData lazyPathData = ((VPath) child).mLazyPathData;
+            if (lazyPathData != null) {
+                lazyPathData.getNodes();
+            }
+        }
+    }
+
+    /**
+     * @return a number which changes each time a path or group changes.
+     */
+    int getTreeGeneration() {
+        return mVectorState.mVPathRenderer.mGeneration;
+    }
+
+    /**
+     * @param renderMode One of {@link #RENDER_MODE_BITMAP}, {@link #RENDER_MODE_LAYERED},
+     *                   {@link #RENDER_MODE_PICTURE}, {@link #RENDER_MODE_TILED} or
+     *                   {@link #RENDER_MODE_MIPMAP}.
+     */
+    public void setRenderMode(int renderMode) {
+        if (mVectorState.mRenderMode != renderMode) {
+            mVectorState.mRenderMode = renderMode;
+            mVectorState.mCachedBitmap = null;
+            mVectorState.mLayerBitmaps = null;
+            mVectorState.mCachedPicture = null;
+            mVectorState.mTiles = null;
+            mVectorState.mTileCount = 0;
+            mVectorState.mMipLevels = null;
+            mVectorState.mCachedWidth = 0;
+            mVectorState.mCachedHeight = 0;
+            mVectorState.mCacheDirty = true;
+            invalidateSelf();
+        }
+    }
+
+    public int getRenderMode() {
+        return mVectorState.mRenderMode;
+    }
+
+    /**
+     * Sets the config of the bitmap caching the rasterized tree.
+     * <ul>
+     * <li>null, the default, picks {@link Bitmap.Config#ALPHA_8} for trees drawn with a single
+     * colour, which loses nothing, and {@link Bitmap.Config#ARGB_8888} otherwise.</li>
+     * <li>{@link Bitmap.Config#ALPHA_8} only keeps the coverage, which is drawn with the colour
+     * of the first path.</li>
+     * <li>{@link Bitmap.Config#RGB_565} halves the memory, but quantizes the colours and
+     * drops the alpha channel, so it is only suitable for opaque trees.</li>
+     * <li>{@link Bitmap.Config#HARDWARE} rasterizes into an ARGB_8888 bitmap, and replaces it by
+     * a hardware copy while the drawable does not change. Only used on API 26+.</li>
+     * </ul>
+     */
+    public void setBitmapConfig(Bitmap.Config config) {
+        if (mVectorState.mBitmapConfig != config) {
+            mVectorState.mBitmapConfig = config;
+            mVectorState.mCachedBitmap = null;
+            mVectorState.mLayerBitmaps = null;
+            mVectorState.mHardwareBitmap = null;
+            mVectorState.mMipLevels = null;
+            mVectorState.mCachedWidth = 0;
+            mVectorState.mCachedHeight = 0;
+            mVectorState.mCacheDirty = true;
+            invalidateSelf();
+        }
+    }
+
+    public Bitmap.Config getBitmapConfig() {
+        return mVectorState.mBitmapConfig;
+    }
+
+    /**
+     * Moves the rasterization of RENDER_MODE_BITMAP to the given executor. Each change of the
+     * tree is rasterized from a snapshot into a back buffer, while the last completed image
+     * keeps being drawn. The drawable invalidates itself once the new image is ready.
+     * <p>
+     * The snapshot is a mirror of the tree made on the first change. On the following ones,
+     * the UI thread only walks the tree to copy the runtime properties into it, which
+     * allocates nothing unless a path data changes shape. If the executor rejects a
+     * rasterization, that change is rasterized in draw().
+     *
+     * @param executor null to rasterize in draw() again, the default.
+     */
+    public void setRasterizationExecutor(Executor executor) {
+        if (mVectorState.mRasterExecutor != executor) {
+            mVectorState.mRasterExecutor = executor;
+            mVectorState.mBackBitmap = null;
+            // Left to a rasterization in progress, the next one makes a new mirror.
+            if (!mVectorState.mRasterizing) {
+                mVectorState.mRasterRenderer = null;
+            }
+            // The cached bitmap may not show the latest changes yet.
+            mVectorState.mCacheDirty = true;
+            invalidateSelf();
+        }
+    }
+
+    public Executor getRasterizationExecutor() {
+        return mVectorState.mRasterExecutor;
+    }
+
     // We don't support RTL auto mirroring since the getLayoutDirection() is for API 17+.
     @SuppressLint({"NewApi", "WrongConstant"})
     private boolean needMirroring() {
@@ -804,7 +1643,12 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         PorterDuff.Mode mTintMode = DEFAULT_TINT_MODE;
         boolean mAutoMirrored;
 
+        // May be larger than the drawn size, only its top left mCachedWidth * mCachedHeight
+        // pixels are used.
         Bitmap mCachedBitmap;
+        int mCachedWidth;
+        int mCachedHeight;
+        final Rect mCachedSrcRect = new Rect();
         int[] mCachedThemeAttrs;
         ColorStateList mCachedTint;
         PorterDuff.Mode mCachedTintMode;
@@ -812,11 +1656,88 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         boolean mCachedAutoMirrored;
         boolean mCacheDirty;
 
+        final Rect mDirtyRect = new Rect();
+
+        int mRenderMode = RENDER_MODE_BITMAP;
+        // Set by setBitmapConfig(), null to pick the cheapest config able to hold the tree.
+        Bitmap.Config mBitmapConfig;
+        // Config of mCachedBitmap and mLayerBitmaps, and the colour drawn through an
+        // ALPHA_8 cache.
+        Bitmap.Config mCachedConfig = Bitmap.Config.ARGB_8888;
+        int mCachedColor;
+        // Set by setRasterizationExecutor(). While mRasterizing, mCachedBitmap is the front
+        // buffer and a snapshot of the tree is drawn on the executor into the back buffer,
+        // which was mBackBitmap.
+        Executor mRasterExecutor;
+        Bitmap mBackBitmap;
+        boolean mRasterizing;
+        // What the executor draws, set by drawAsync() before each rasterization so that it
+        // allocates nothing on the UI thread: a mirror of the tree which only gets the changed
+        // properties copied into it, the size, config and colour of the image, and the back
+        // buffer, which holds the image until it is swapped.
+        VPathRenderer mRasterRenderer;
+        VectorDrawableCompat mRasterDrawable;
+        Bitmap mRasterBitmap;
+        Bitmap.Config mRasterConfig;
+        int mRasterColor;
+        int mRasterWidth;
+        int mRasterHeight;
+        Canvas mRasterCanvas;
+        final Runnable mRasterization = new Runnable() {
+            @Override
+            public void run() {
+                rasterize();
+            }
+        };
+        final Runnable mSwap = new Runnable() {
+            @Override
+            public void run() {
+                swapBuffers();
+            }
+        };
+        // Only used with Bitmap.Config.HARDWARE, copy of mCachedBitmap made once the drawable
+        // stopped changing, which then replaces it.
+        Bitmap mHardwareBitmap;
+        // Only used by RENDER_MODE_LAYERED, one bitmap per layer of mVPathRenderer.
+        Bitmap[] mLayerBitmaps;
+        // Only used by RENDER_MODE_PICTURE, with the size and filter it was recorded for.
+        Picture mCachedPicture;
+        int mCachedPictureWidth;
+        int mCachedPictureHeight;
+        ColorFilter mCachedPictureFilter;
+        // Posts the images rasterized on mRasterExecutor back to the UI thread.
+        private static volatile Handler sMainHandler;
+        // Only used by RENDER_MODE_TILED, the most recently used tiles of the
+        // mTiledWidth * mTiledHeight image.
+        Tile[] mTiles;
+        int mTileCount;
+        int mTiledWidth;
+        int mTiledHeight;
+        int mTileFrame;
+        final Rect mTileRect = new Rect();
+        final Rect mClipRect = new Rect();
+        // Columns and rows of the tiles in the canvas clip, see getVisibleTiles().
+        final Rect mVisibleTiles = new Rect();
+        final RectF mTileDstRect = new RectF();
+        // Only used by RENDER_MODE_MIPMAP, one image per power of two scale from
+        // MIN_MIP_LEVEL, with its size and the generation of the tree it shows.
+        Bitmap[] mMipLevels;
+        int[] mMipLevelWidths;
+        int[] mMipLevelHeights;
+        int[] mMipLevelGenerations;
+        int[] mMipLevelLastUsed;
+        int mMipFrame;
+
         /**
          * Temporary paint object used to draw cached bitmaps.
          */
         Paint mTempPaint;
 
+        /**
+         * Temporary canvas used to draw into the cached bitmaps.
+         */
+        Canvas mTmpCanvas;
+
         // Deep copy for mutate() or implicitly mutate.
         public VectorDrawableCompatState(VectorDrawableCompatState copy) {
             if (copy != null) {
@@ -831,71 +1752,764 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
                 mTint = copy.mTint;
                 mTintMode = copy.mTintMode;
                 mAutoMirrored = copy.mAutoMirrored;
+                mRenderMode = copy.mRenderMode;
+                mBitmapConfig = copy.mBitmapConfig;
+                mRasterExecutor = copy.mRasterExecutor;
             }
         }
 
         public void drawCachedBitmapWithRootAlpha(Canvas canvas, ColorFilter filter,
                                                   Rect originalBounds) {
-            // The bitmap's size is the same as the bounds.
-            final Paint p = getPaint(filter);
-            canvas.drawBitmap(mCachedBitmap, null, originalBounds, p);
-        }
-
-        public boolean hasTranslucentRoot() {
-            return mVPathRenderer.getRootAlpha() < 255;
+            // The used area of the bitmap has the same size as the bounds.
+            final Bitmap bitmap = mHardwareBitmap != null ? mHardwareBitmap : mCachedBitmap;
+            drawBitmapWithRootAlpha(canvas, filter, bitmap, mCachedWidth, mCachedHeight,
+                    originalBounds, false);
         }
 
         /**
-         * @return null when there is no need for alpha paint.
+         * Starts rasterizing the tree on mRasterExecutor if it changed, and draws the last
+         * rasterized image meanwhile.
+         *
+         * @return false when there is no image to show yet or the executor rejected the
+         * rasterization, the cached bitmap then needs to be drawn synchronously.
          */
-        public Paint getPaint(ColorFilter filter) {
-            if (!hasTranslucentRoot() && filter == null) {
-                return null;
+        public boolean drawAsync(VectorDrawableCompat drawable, Canvas canvas,
+                                 ColorFilter filter, Rect originalBounds, int width,
+                                 int height) {
+            if (mCachedBitmap == null) {
+                return false;
             }
-
-            if (mTempPaint == null) {
-                mTempPaint = new Paint();
-                mTempPaint.setFilterBitmap(true);
+            if (!mRasterizing && (!canReuseCache() || width != mCachedWidth
+                    || height != mCachedHeight)) {
+                // The front buffer keeps being drawn with its own colour until the swap.
+                final int frontColor = mCachedColor;
+                updateCachedConfig();
+                mRasterColor = mCachedColor;
+                mCachedColor = frontColor;
+                // The executor only ever touches the mirror, so the tree can keep changing.
+                if (mRasterRenderer == null) {
+                    mRasterRenderer = new VPathRenderer(mVPathRenderer);
+                } else {
+                    mRasterRenderer.syncFrom(mVPathRenderer);
+                }
+                mRasterDrawable = drawable;
+                mRasterBitmap = mBackBitmap;
+                mRasterConfig = mCachedConfig;
+                mRasterWidth = width;
+                mRasterHeight = height;
+                mBackBitmap = null;
+                mVPathRenderer.clearDirtyRect();
+                updateCacheStates();
+                try {
+                    mRasterExecutor.execute(mRasterization);
+                } catch (RejectedExecutionException e) {
+                    // E.g. the executor was shut down, rasterize this change in draw().
+                    Log.w(LOGTAG, "Rasterization rejected by the executor", e);
+                    mBackBitmap = mRasterBitmap;
+                    mRasterBitmap = null;
+                    mRasterDrawable = null;
+                    mCachedColor = mRasterColor;
+                    mCacheDirty = true;
+                    return false;
+                }
+                mRasterizing = true;
             }
-            mTempPaint.setAlpha(mVPathRenderer.getRootAlpha());
-            mTempPaint.setColorFilter(filter);
-            return mTempPaint;
+            drawCachedBitmapWithRootAlpha(canvas, filter, originalBounds);
+            return true;
         }
 
-        public void updateCachedBitmap(int width, int height) {
-            mCachedBitmap.eraseColor(Color.TRANSPARENT);
-            Canvas tmpCanvas = new Canvas(mCachedBitmap);
-            mVPathRenderer.draw(tmpCanvas, width, height, null);
+        /**
+         * Runs on mRasterExecutor, draws mRasterRenderer into the back buffer.
+         */
+        private void rasterize() {
+            Bitmap bitmap = mRasterBitmap;
+            if (bitmap == null || bitmap.getConfig() != mRasterConfig
+                    || !canReuseBitmap(bitmap, mRasterWidth, mRasterHeight)) {
+                bitmap = obtainBitmap(bitmap, mRasterWidth, mRasterHeight, mRasterConfig);
+            }
+            bitmap.eraseColor(Color.TRANSPARENT);
+            if (mRasterCanvas == null) {
+                mRasterCanvas = new Canvas(bitmap);
+            } else {
+                mRasterCanvas.setBitmap(bitmap);
+            }
+            mRasterRenderer.draw(mRasterCanvas, mRasterWidth, mRasterHeight, null);
+            // Always drawn in full, what the last sync changed is of no use.
+            mRasterRenderer.clearDirtyRect();
+            mRasterBitmap = bitmap;
+            getMainHandler().post(mSwap);
+        }
+
+        private void swapBuffers() {
+            final VectorDrawableCompat drawable = mRasterDrawable;
+            mRasterDrawable = null;
+            mRasterizing = false;
+            // The caches may have been dropped meanwhile, e.g. by setRenderMode().
+            if (mRasterExecutor != null && mCachedBitmap != null && !mCacheDirty) {
+                mBackBitmap = mCachedBitmap;
+                mCachedBitmap = mRasterBitmap;
+                mCachedColor = mRasterColor;
+                mCachedWidth = mRasterWidth;
+                mCachedHeight = mRasterHeight;
+            }
+            mRasterBitmap = null;
+            drawable.invalidateSelf();
+        }
+
+        private static Handler getMainHandler() {
+            if (sMainHandler == null) {
+                sMainHandler = new Handler(Looper.getMainLooper());
+            }
+            return sMainHandler;
+        }
+
+        /**
+         * Draws the top left width * height pixels of the bitmap into the bounds.
+         */
+        private void drawBitmapWithRootAlpha(Canvas canvas, ColorFilter filter, Bitmap bitmap,
+                                             int width, int height, Rect originalBounds,
+                                             boolean scaled) {
+            final Paint p;
+            if (bitmap.getConfig() == Bitmap.Config.ALPHA_8) {
+                // The bitmap only holds the coverage, the paint gives the colour.
+                p = getPaint(filter, true);
+                p.setColor(mCachedColor);
+                p.setAlpha(mVPathRenderer.getRootAlpha());
+            } else {
+                // A scaled bitmap needs the paint for filtering.
+                p = getPaint(filter, scaled);
+            }
+            mCachedSrcRect.set(0, 0, width, height);
+            canvas.drawBitmap(bitmap, mCachedSrcRect, originalBounds, p);
+        }
+
+        /**
+         * Draws the image cached at the power of two scale closest to the given one,
+         * rasterizing it first if it is missing or shows an older version of the tree.
+         */
+        public void drawMipLevel(Canvas canvas, ColorFilter filter, Rect originalBounds,
+                                 float scale) {
+            int level = Math.max(MIN_MIP_LEVEL, Math.min(MAX_MIP_LEVEL,
+                    Math.round((float) (Math.log(scale) / Math.log(2)))));
+            // The levels clamped to MAX_CACHED_BITMAP_SIZE all share the lowest one's slot.
+            final int maxSide = Math.max(originalBounds.width(), originalBounds.height());
+            while (level > MIN_MIP_LEVEL
+                    && Math.scalb((float) maxSide, level - 1) >= MAX_CACHED_BITMAP_SIZE) {
+                level--;
+            }
+            final int width = Math.min(MAX_CACHED_BITMAP_SIZE,
+                    (int) Math.scalb((float) originalBounds.width(), level));
+            final int height = Math.min(MAX_CACHED_BITMAP_SIZE,
+                    (int) Math.scalb((float) originalBounds.height(), level));
+            if (width <= 0 || height <= 0) {
+                return;
+            }
+            if (mMipLevels == null) {
+                final int levelCount = MAX_MIP_LEVEL - MIN_MIP_LEVEL + 1;
+                mMipLevels = new Bitmap[levelCount];
+                mMipLevelWidths = new int[levelCount];
+                mMipLevelHeights = new int[levelCount];
+                mMipLevelGenerations = new int[levelCount];
+                mMipLevelLastUsed = new int[levelCount];
+            }
+
+            final VPathRenderer renderer = mVPathRenderer;
+            final int index = level - MIN_MIP_LEVEL;
+            Bitmap bitmap = mMipLevels[index];
+            if (bitmap == null || bitmap.getConfig() != mCachedConfig
+                    || width != mMipLevelWidths[index] || height != mMipLevelHeights[index]
+                    || renderer.mGeneration != mMipLevelGenerations[index]) {
+                if (bitmap == null || bitmap.getConfig() != mCachedConfig
+                        || !canReuseBitmap(bitmap, width, height)) {
+                    bitmap = obtainBitmap(bitmap, width, height, mCachedConfig);
+                    mMipLevels[index] = bitmap;
+                }
+                bitmap.eraseColor(Color.TRANSPARENT);
+                // A mask per level would be rasterized again at every level switch.
+                renderer.mCoverageMasksBypassed = true;
+                renderer.draw(getCanvas(bitmap), width, height, null);
+                renderer.mCoverageMasksBypassed = false;
+                mMipLevelWidths[index] = width;
+                mMipLevelHeights[index] = height;
+                mMipLevelGenerations[index] = renderer.mGeneration;
+            }
+            mMipLevelLastUsed[index] = ++mMipFrame;
+            releaseMipLevels();
+            drawBitmapWithRootAlpha(canvas, filter, bitmap, width, height, originalBounds, true);
+        }
+
+        /**
+         * Releases the least recently drawn levels beyond MAX_KEPT_MIP_LEVELS.
+         */
+        private void releaseMipLevels() {
+            while (true) {
+                int kept = 0;
+                int oldest = -1;
+                for (int i = 0; i < mMipLevels.length; i++) {
+                    if (mMipLevels[i] != null) {
+                        kept++;
+                        if (oldest < 0 || mMipLevelLastUsed[i] < mMipLevelLastUsed[oldest]) {
+                            oldest = i;
+                        }
+                    }
+                }
+                if (kept <= MAX_KEPT_MIP_LEVELS) {
+                    return;
+                }
+                mMipLevels[oldest] = null;
+            }
+        }
+
+        /**
+         * Records the tree again if it changed since the last recording, then replays it.
+         */
+        @SuppressWarnings("deprecation")
+        public void drawCachedPicture(Canvas canvas, ColorFilter filter, Rect originalBounds,
+                                      boolean allowCaching) {
+            final int width = originalBounds.width();
+            final int height = originalBounds.height();
+            if (mCachedPicture == null || !allowCaching || mVPathRenderer.isDirty()
+                    || mCachedPictureWidth != width || mCachedPictureHeight != height
+                    || mCachedPictureFilter != filter) {
+                if (mCachedPicture == null) {
+                    mCachedPicture = new Picture();
+                }
+                // Unlike the cached bitmap, the filter is applied while recording, so that
+                // only the root alpha needs an offscreen layer.
+                final Canvas recordingCanvas = mCachedPicture.beginRecording(width, height);
+                // Masks recorded in the picture would blur when it's replayed scaled.
+                mVPathRenderer.mCoverageMasksBypassed = true;
+                mVPathRenderer.draw(recordingCanvas, width, height, filter);
+                mVPathRenderer.mCoverageMasksBypassed = false;
+                mCachedPicture.endRecording();
+                mVPathRenderer.clearDirtyRect();
+                mVPathRenderer.clearDirty();
+                mCachedPictureWidth = width;
+                mCachedPictureHeight = height;
+                mCachedPictureFilter = filter;
+                // The tree is no longer marked dirty, so a cached bitmap used as fallback
+                // must be fully redrawn.
+                mCacheDirty = true;
+            }
+            replayPicture(canvas);
+        }
+
+        @SuppressWarnings("deprecation")
+        private void replayPicture(Canvas canvas) {
+            if (hasTranslucentRoot()) {
+                final int saveCount = canvas.saveLayerAlpha(0, 0, mCachedPictureWidth,
+                        mCachedPictureHeight, mVPathRenderer.getRootAlpha(),
+                        Canvas.ALL_SAVE_FLAG);
+                canvas.drawPicture(mCachedPicture);
+                canvas.restoreToCount(saveCount);
+            } else {
+                canvas.drawPicture(mCachedPicture);
+            }
+        }
+
+        /**
+         * Draws what the render mode last produced, without looking at the changes made to
+         * the tree since.
+         *
+         * @return false when there is nothing to replay, e.g. before the first draw, after a
+         * change of the render mode or of the bitmap config, or when some visible tiles
+         * aren't cached.
+         */
+        public boolean drawLastFrame(Canvas canvas, ColorFilter filter, Rect originalBounds,
+                                     int width, int height, boolean canDrawPicture) {
+            if (mRenderMode == RENDER_MODE_PICTURE && canDrawPicture) {
+                if (mCachedPicture == null || mCachedPictureFilter != filter
+                        || mCachedPictureWidth != originalBounds.width()
+                        || mCachedPictureHeight != originalBounds.height()) {
+                    return false;
+                }
+                replayPicture(canvas);
+                return true;
+            }
+            if (mRenderMode == RENDER_MODE_TILED) {
+                return drawCachedTiles(canvas, filter, originalBounds, width, height);
+            }
+            if (mHardwareBitmap != null || mCachedBitmap != null) {
+                drawCachedBitmapWithRootAlpha(canvas, filter, originalBounds);
+                return true;
+            }
+            if (mRenderMode == RENDER_MODE_MIPMAP && mMipLevels != null) {
+                int last = -1;
+                for (int i = 0; i < mMipLevels.length; i++) {
+                    if (mMipLevels[i] != null
+                            && (last < 0 || mMipLevelLastUsed[i] > mMipLevelLastUsed[last])) {
+                        last = i;
+                    }
+                }
+                if (last >= 0) {
+                    drawBitmapWithRootAlpha(canvas, filter, mMipLevels[last],
+                            mMipLevelWidths[last], mMipLevelHeights[last], originalBounds, true);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Draws the tiles visible in the canvas clip, rasterizing the ones which are missing
+         * or overlap the paths changed since the last draw.
+         */
+        public void drawTiles(Canvas canvas, ColorFilter filter, Rect originalBounds,
+                              int width, int height, boolean allowCaching) {
+            final VPathRenderer renderer = mVPathRenderer;
+            // Once per frame, the dirty tiles are then drawn without updating the tree again.
+            renderer.updateTree();
+            // The root alpha is applied when the tiles are drawn, it doesn't dirty them.
+            if (!allowCaching || width != mTiledWidth || height != mTiledHeight
+                    || !isRasterStateUnchanged()) {
+                mTiledWidth = width;
+                mTiledHeight = height;
+                for (int i = 0; i < mTileCount; i++) {
+                    mTiles[i].mDirty = true;
+                }
+            } else if (renderer.isDirty()) {
+                if (renderer.getDirtyRect(width, height, mDirtyRect)) {
+                    for (int i = 0; i < mTileCount; i++) {
+                        final Tile tile = mTiles[i];
+                        mTileRect.set(tile.mX, tile.mY, tile.mX + TILE_SIZE, tile.mY + TILE_SIZE);
+                        if (Rect.intersects(mTileRect, mDirtyRect)) {
+                            tile.mDirty = true;
+                        }
+                    }
+                }
+            }
+            renderer.clearDirtyRect();
+            updateCacheStates();
+
+            if (!getVisibleTiles(canvas, originalBounds, width, height)) {
+                return;
+            }
+            final Rect visible = mVisibleTiles;
+            ensureTileCapacity(visible.width() * visible.height() + EXTRA_CACHED_TILES);
+
+            mTileFrame++;
+            final float scaleX = (float) width / originalBounds.width();
+            final float scaleY = (float) height / originalBounds.height();
+            final Paint p = getPaint(filter, false);
+            for (int ty = visible.top; ty < visible.bottom; ty++) {
+                for (int tx = visible.left; tx < visible.right; tx++) {
+                    final Tile tile = obtainTile(tx * TILE_SIZE, ty * TILE_SIZE);
+                    if (tile.mDirty) {
+                        tile.mBitmap.eraseColor(Color.TRANSPARENT);
+                        final Canvas tileCanvas = getCanvas(tile.mBitmap);
+                        final int saveCount = tileCanvas.save();
+                        tileCanvas.translate(-tile.mX, -tile.mY);
+                        mTileRect.set(tile.mX, tile.mY, tile.mX + TILE_SIZE, tile.mY + TILE_SIZE);
+                        renderer.draw(tileCanvas, width, height, null, mTileRect);
+                        tileCanvas.restoreToCount(saveCount);
+                        tile.mDirty = false;
+                    }
+                    drawTile(canvas, tile, width, height, scaleX, scaleY, p);
+                }
+            }
+        }
+
+        /**
+         * Draws the visible tiles as they were last rasterized, when they are all cached.
+         */
+        private boolean drawCachedTiles(Canvas canvas, ColorFilter filter, Rect originalBounds,
+                                        int width, int height) {
+            if (width != mTiledWidth || height != mTiledHeight) {
+                return false;
+            }
+            if (!getVisibleTiles(canvas, originalBounds, width, height)) {
+                return true;
+            }
+            final Rect visible = mVisibleTiles;
+            for (int ty = visible.top; ty < visible.bottom; ty++) {
+                for (int tx = visible.left; tx < visible.right; tx++) {
+                    final Tile tile = findTile(tx * TILE_SIZE, ty * TILE_SIZE);
+                    if (tile == null || tile.mDirty) {
+                        return false;
+                    }
+                }
+            }
+            final float scaleX = (float) width / originalBounds.width();
+            final float scaleY = (float) height / originalBounds.height();
+            final Paint p = getPaint(filter, false);
+            for (int ty = visible.top; ty < visible.bottom; ty++) {
+                for (int tx = visible.left; tx < visible.right; tx++) {
+                    drawTile(canvas, findTile(tx * TILE_SIZE, ty * TILE_SIZE), width, height,
+                            scaleX, scaleY, p);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Sets mVisibleTiles to the columns and rows of the tiles in the canvas clip.
+         *
+         * @return false when no tile is visible.
+         */
+        private boolean getVisibleTiles(Canvas canvas, Rect originalBounds, int width,
+                                        int height) {
+            if (!canvas.getClipBounds(mClipRect) || !mClipRect.intersect(originalBounds)) {
+                return false;
+            }
+            final float scaleX = (float) width / originalBounds.width();
+            final float scaleY = (float) height / originalBounds.height();
+            final int firstX = Math.max(0, (int) (mClipRect.left * scaleX) / TILE_SIZE);
+            final int firstY = Math.max(0, (int) (mClipRect.top * scaleY) / TILE_SIZE);
+            final int lastX = Math.min((width - 1) / TILE_SIZE,
+                    ((int) Math.ceil(mClipRect.right * scaleX) - 1) / TILE_SIZE);
+            final int lastY = Math.min((height - 1) / TILE_SIZE,
+                    ((int) Math.ceil(mClipRect.bottom * scaleY) - 1) / TILE_SIZE);
+            mVisibleTiles.set(firstX, firstY, lastX + 1, lastY + 1);
+            return lastX >= firstX && lastY >= firstY;
+        }
+
+        private void drawTile(Canvas canvas, Tile tile, int width, int height, float scaleX,
+                              float scaleY, Paint p) {
+            final int tileWidth = Math.min(TILE_SIZE, width - tile.mX);
+            final int tileHeight = Math.min(TILE_SIZE, height - tile.mY);
+            mTileRect.set(0, 0, tileWidth, tileHeight);
+            mTileDstRect.set(tile.mX / scaleX, tile.mY / scaleY,
+                    (tile.mX + tileWidth) / scaleX, (tile.mY + tileHeight) / scaleY);
+            canvas.drawBitmap(tile.mBitmap, mTileRect, mTileDstRect, p);
+        }
+
+        private Tile findTile(int x, int y) {
+            for (int i = 0; i < mTileCount; i++) {
+                final Tile tile = mTiles[i];
+                if (tile.mX == x && tile.mY == y) {
+                    return tile;
+                }
+            }
+            return null;
+        }
+
+        private void ensureTileCapacity(int capacity) {
+            if (mTiles == null) {
+                mTiles = new Tile[capacity];
+            } else if (mTiles.length < capacity) {
+                final Tile[] tiles = new Tile[capacity];
+                System.arraycopy(mTiles, 0, tiles, 0, mTileCount);
+                mTiles = tiles;
+            }
+        }
+
+        /**
+         * @return the tile whose top left pixel is (x, y), marked dirty if it wasn't cached.
+         * When the cache is full, the least recently used tile is reused.
+         */
+        private Tile obtainTile(int x, int y) {
+            Tile leastRecentlyUsed = null;
+            for (int i = 0; i < mTileCount; i++) {
+                final Tile tile = mTiles[i];
+                if (tile.mX == x && tile.mY == y) {
+                    tile.mLastUsedFrame = mTileFrame;
+                    return tile;
+                }
+                if (leastRecentlyUsed == null
+                        || tile.mLastUsedFrame < leastRecentlyUsed.mLastUsedFrame) {
+                    leastRecentlyUsed = tile;
+                }
+            }
+            final Tile tile;
+            if (mTileCount < mTiles.length) {
+                tile = new Tile(Bitmap.createBitmap(TILE_SIZE, TILE_SIZE,
+                        Bitmap.Config.ARGB_8888));
+                mTiles[mTileCount++] = tile;
+            } else {
+                tile = leastRecentlyUsed;
+            }
+            tile.mX = x;
+            tile.mY = y;
+            tile.mDirty = true;
+            tile.mLastUsedFrame = mTileFrame;
+            return tile;
+        }
+
+        public boolean hasTranslucentRoot() {
+            return mVPathRenderer.getRootAlpha() < 255;
+        }
+
+        /**
+         * @return null when there is no need for alpha paint, unless required.
+         */
+        public Paint getPaint(ColorFilter filter, boolean required) {
+            if (!required && !hasTranslucentRoot() && filter == null) {
+                return null;
+            }
+
+            if (mTempPaint == null) {
+                mTempPaint = new Paint();
+                mTempPaint.setFilterBitmap(true);
+            }
+            mTempPaint.setAlpha(mVPathRenderer.getRootAlpha());
+            mTempPaint.setColorFilter(filter);
+            return mTempPaint;
+        }
+
+        /**
+         * @return a canvas drawing into the given bitmap, reused to avoid an allocation per
+         * frame.
+         */
+        private Canvas getCanvas(Bitmap bitmap) {
+            if (mTmpCanvas == null) {
+                mTmpCanvas = new Canvas(bitmap);
+            } else {
+                mTmpCanvas.setBitmap(bitmap);
+            }
+            return mTmpCanvas;
+        }
+
+        public void updateCachedBitmap(int width, int height) {
+            if (mRenderMode == RENDER_MODE_LAYERED) {
+                updateLayerBitmaps(width, height);
+            } else {
+                mCachedBitmap.eraseColor(Color.TRANSPARENT);
+                mVPathRenderer.draw(getCanvas(mCachedBitmap), width, height, null);
+            }
+            mVPathRenderer.clearDirtyRect();
+        }
+
+        /**
+         * Only re-rasterizes the area covered by the nodes changed since the last update.
+         * Before calling this, make sure canUpdateDirtyRect() is true.
+         */
+        public void updateCachedBitmapDirtyRect(int width, int height) {
+            final VPathRenderer renderer = mVPathRenderer;
+            renderer.updateTree();
+            if (renderer.getDirtyRect(width, height, mDirtyRect)) {
+                final Canvas tmpCanvas = getCanvas(mCachedBitmap);
+                final int saveCount = tmpCanvas.save();
+                tmpCanvas.clipRect(mDirtyRect);
+                tmpCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                renderer.draw(tmpCanvas, width, height, null, mDirtyRect);
+                tmpCanvas.restoreToCount(saveCount);
+            }
+            renderer.clearDirtyRect();
+        }
+
+        /**
+         * Re-rasterizes the dirty layers only, then composes all the layers into the cached
+         * bitmap. Unless the layout, the size or the tint changed, both are limited to the
+         * area covered by the changed nodes, so a change costs the layers times that area.
+         */
+        private void updateLayerBitmaps(int width, int height) {
+            final VPathRenderer renderer = mVPathRenderer;
+            final boolean layoutChanged = renderer.updateLayerLayout();
+            final int layerCount = renderer.mLayerCount;
+            if (layoutChanged || mLayerBitmaps == null || mLayerBitmaps.length != layerCount) {
+                final Bitmap[] oldBitmaps = mLayerBitmaps;
+                mLayerBitmaps = new Bitmap[layerCount];
+                if (oldBitmaps != null) {
+                    System.arraycopy(oldBitmaps, 0, mLayerBitmaps, 0,
+                            Math.min(oldBitmaps.length, layerCount));
+                }
+                renderer.invalidateLayers();
+            }
+
+            // Pixels outside the dirty rect are the same in every layer and in the composite.
+            Rect dirtyRect = null;
+            if (!layoutChanged && isRasterStateUnchanged()) {
+                renderer.updateTree();
+                if (!renderer.getDirtyRect(width, height, mDirtyRect)) {
+                    // Nothing visible changed.
+                    for (int i = 0; i < layerCount; i++) {
+                        renderer.mLayerDirty[i] = false;
+                    }
+                    return;
+                }
+                dirtyRect = mDirtyRect;
+            }
+
+            // The layers are composed on top of each other, so they need an alpha channel.
+            final Bitmap.Config layerConfig = mCachedConfig == Bitmap.Config.RGB_565
+                    ? Bitmap.Config.ARGB_8888 : mCachedConfig;
+            for (int i = 0; i < layerCount; i++) {
+                Bitmap layer = mLayerBitmaps[i];
+                boolean reallocated = false;
+                if (layer == null || layer.getConfig() != layerConfig
+                        || !canReuseBitmap(layer, width, height)) {
+                    layer = obtainBitmap(layer, width, height, layerConfig);
+                    mLayerBitmaps[i] = layer;
+                    renderer.mLayerDirty[i] = true;
+                    reallocated = true;
+                }
+                if (renderer.mLayerDirty[i]) {
+                    final Canvas layerCanvas = getCanvas(layer);
+                    final int saveCount = layerCanvas.save();
+                    if (dirtyRect != null && !reallocated) {
+                        layerCanvas.clipRect(dirtyRect);
+                    }
+                    layerCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                    renderer.draw(layerCanvas, width, height, null,
+                            renderer.mLayerStart[i], renderer.mLayerStart[i + 1]);
+                    layerCanvas.restoreToCount(saveCount);
+                    renderer.mLayerDirty[i] = false;
+                }
+            }
+
+            final Canvas tmpCanvas = getCanvas(mCachedBitmap);
+            final int saveCount = tmpCanvas.save();
+            if (dirtyRect != null) {
+                tmpCanvas.clipRect(dirtyRect);
+            }
+            tmpCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            for (int i = 0; i < layerCount; i++) {
+                tmpCanvas.drawBitmap(mLayerBitmaps[i], 0, 0, null);
+            }
+            tmpCanvas.restoreToCount(saveCount);
         }
 
         public void createCachedBitmapIfNeeded(int width, int height) {
-            if (mCachedBitmap == null || !canReuseBitmap(width, height)) {
-                mCachedBitmap = Bitmap.createBitmap(width, height,
-                        Bitmap.Config.ARGB_8888);
+            mHardwareBitmap = null;
+            if (mCachedBitmap == null || mVPathRenderer.isDirty()) {
+                updateCachedConfig();
+            }
+            if (mCachedBitmap == null || mCachedBitmap.getConfig() != mCachedConfig
+                    || !canReuseBitmap(mCachedBitmap, width, height)) {
+                mCachedBitmap = obtainBitmap(mCachedBitmap, width, height, mCachedConfig);
                 mCacheDirty = true;
             }
+            if (width != mCachedWidth || height != mCachedHeight) {
+                mCachedWidth = width;
+                mCachedHeight = height;
+                // Everything is drawn at a different scale.
+                mCacheDirty = true;
+                mVPathRenderer.invalidateLayers();
+            }
+        }
+
+        /**
+         * @return whether a width * height image can be drawn into the top left corner of
+         * the bitmap. Bitmaps up to one bucket too large are kept so that a shrinking
+         * drawable does not allocate on every frame.
+         */
+        public boolean canReuseBitmap(Bitmap bitmap, int width, int height) {
+            if (width > bitmap.getWidth() || height > bitmap.getHeight()) {
+                return false;
+            }
+            return getBucketSize(getBucketSize(width) + 1) >= bitmap.getWidth()
+                    && getBucketSize(getBucketSize(height) + 1) >= bitmap.getHeight();
+        }
+
+        /**
+         * @return a bitmap of the bucket size for width * height, which reuses the memory of
+         * the given bitmap when it is large enough.
+         */
+        private static Bitmap obtainBitmap(Bitmap reuse, int width, int height,
+                                          Bitmap.Config config) {
+            final int bucketWidth = getBucketSize(width);
+            final int bucketHeight = getBucketSize(height);
+            final int byteCount = bucketWidth * bucketHeight * getBytesPerPixel(config);
+            // Don't hold on to more than twice the memory needed.
+            if (reuse != null && Build.VERSION.SDK_INT >= 19 && reuse.isMutable()
+                    && byteCount <= reuse.getAllocationByteCount()
+                    && byteCount * 2 >= reuse.getAllocationByteCount()) {
+                reuse.reconfigure(bucketWidth, bucketHeight, config);
+                return reuse;
+            }
+            return Bitmap.createBitmap(bucketWidth, bucketHeight, config);
+        }
+
+        private static int getBytesPerPixel(Bitmap.Config config) {
+            if (config == Bitmap.Config.ALPHA_8) {
+                return 1;
+            } else if (config == Bitmap.Config.RGB_565) {
+                return 2;
+            }
+            return 4;
+        }
 
+        /**
+         * Picks the config of the cached bitmaps for the current state of the tree. A new
+         * config causes the bitmaps to be allocated and fully redrawn again.
+         */
+        private void updateCachedConfig() {
+            final VPathRenderer renderer = mVPathRenderer;
+            final boolean singleColor = renderer.isSingleColor();
+            mCachedColor = renderer.mSingleColor;
+            Bitmap.Config config = mBitmapConfig;
+            if (config == null) {
+                // RGB_565 is lossy, it is only used when requested.
+                config = singleColor ? Bitmap.Config.ALPHA_8 : Bitmap.Config.ARGB_8888;
+            } else if (config != Bitmap.Config.ALPHA_8 && config != Bitmap.Config.RGB_565) {
+                config = Bitmap.Config.ARGB_8888;
+            }
+            mCachedConfig = config;
+        }
+
+        /**
+         * Replaces the cached bitmap by a hardware copy when requested by setBitmapConfig().
+         * Only call this once the cached bitmap is up to date.
+         */
+        @SuppressLint("NewApi")
+        public void createHardwareBitmapIfNeeded() {
+            if (mBitmapConfig != Bitmap.Config.HARDWARE || Build.VERSION.SDK_INT < 26
+                    || mHardwareBitmap != null || mCachedBitmap == null) {
+                return;
+            }
+            mHardwareBitmap = mCachedBitmap.copy(Bitmap.Config.HARDWARE, false);
+            if (mHardwareBitmap != null) {
+                // The next change rasterizes into a new bitmap.
+                mCachedBitmap = null;
+            }
         }
 
-        public boolean canReuseBitmap(int width, int height) {
-            if (width == mCachedBitmap.getWidth()
-                    && height == mCachedBitmap.getHeight()) {
+        /**
+         * @return whether the hardware copy of the cached bitmap is up to date.
+         */
+        public boolean canDrawHardwareBitmap(Canvas canvas, int width, int height) {
+            if (mHardwareBitmap == null) {
+                return false;
+            }
+            if (canvas.isHardwareAccelerated() && width == mCachedWidth
+                    && height == mCachedHeight && canReuseCache()) {
                 return true;
             }
+            mHardwareBitmap = null;
             return false;
         }
 
+        /**
+         * Rounds a bitmap dimension up to the next multiple of an eighth of the power of two
+         * below it, so that a resize animation only crosses a bucket every 12% or so.
+         */
+        static int getBucketSize(int size) {
+            final int step = Math.max(MIN_BITMAP_SIZE_STEP, Integer.highestOneBit(size) / 8);
+            return Math.min(MAX_CACHED_BITMAP_SIZE, (size + step - 1) / step * step);
+        }
+
         public boolean canReuseCache() {
-            if (!mCacheDirty
-                    && mCachedTint == mTint
-                    && mCachedTintMode == mTintMode
-                    && mCachedAutoMirrored == mAutoMirrored
-                    && mCachedRootAlpha == mVPathRenderer.getRootAlpha()) {
+            if (!mVPathRenderer.isDirty() && isCacheStateUnchanged()) {
                 return true;
             }
             return false;
         }
 
+        /**
+         * @return whether the cached bitmap only needs the area changed in the tree to be
+         * rasterized again.
+         */
+        public boolean canUpdateDirtyRect() {
+            return (mRenderMode == RENDER_MODE_BITMAP || mRenderMode == RENDER_MODE_MIPMAP)
+                    && isCacheStateUnchanged();
+        }
+
+        private boolean isCacheStateUnchanged() {
+            return isRasterStateUnchanged()
+                    && mCachedRootAlpha == mVPathRenderer.getRootAlpha();
+        }
+
+        /**
+         * Like isCacheStateUnchanged(), but ignores the root alpha, for the caches which apply
+         * it when they are drawn instead of when they are rasterized.
+         */
+        private boolean isRasterStateUnchanged() {
+            return !mCacheDirty
+                    && mCachedTint == mTint
+                    && mCachedTintMode == mTintMode
+                    && mCachedAutoMirrored == mAutoMirrored;
+        }
+
         public void updateCacheStates() {
             // Use shallow copy here and shallow comparison in canReuseCache(),
             // likely hit cache miss more, but practically not much difference.
@@ -904,6 +2518,7 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             mCachedRootAlpha = mVPathRenderer.getRootAlpha();
             mCachedAutoMirrored = mAutoMirrored;
             mCacheDirty = false;
+            mVPathRenderer.clearDirty();
         }
 
         public VectorDrawableCompatState() {
@@ -926,6 +2541,36 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         }
     }
 
+    /**
+     * A TILE_SIZE square of the image drawn by RENDER_MODE_TILED, in scaled pixels.
+     */
+    private static class Tile {
+        final Bitmap mBitmap;
+        int mX;
+        int mY;
+        boolean mDirty;
+        int mLastUsedFrame;
+
+        Tile(Bitmap bitmap) {
+            mBitmap = bitmap;
+        }
+    }
+
+    /**
+     * The coverage of the fill or the stroke of a VFullPath, in the pixels of the bitmap
+     * the renderer draws into, see VPathRenderer.drawCoverageMask().
+     */
+    private static class CoverageMask {
+        // Null when the path covers no pixel.
+        Bitmap mBitmap;
+        int mLeft;
+        int mTop;
+        // mFinalPathMatrix when the mask was rasterized.
+        final Matrix mMatrix = new Matrix();
+        // Set when the geometry of the path changed.
+        boolean mStale = true;
+    }
+
     private static class VPathRenderer {
         /* Right now the internal data structure is organized as a tree.
          * Each node can be a group node, or a path.
@@ -941,14 +2586,29 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
          */
         // Variables that only used temporarily inside the draw() call, so there
         // is no need for deep copying.
-        private final Path mPath;
         private final Path mRenderPath;
         private static final Matrix IDENTITY_MATRIX = new Matrix();
         private final Matrix mFinalPathMatrix = new Matrix();
+        private final RectF mTmpRectF = new RectF();
+        private final RectF mCullRectF = new RectF();
+        private final Rect mCullClipRect = new Rect();
+        private final float[] mTmpUnitVectors = new float[4];
+        // Current point and control point of PathDataNode.nodesToPath().
+        final float[] mTmpPathCoords = new float[6];
+        // When set, the paths and groups whose bounds are outside of it are not drawn. The
+        // bounds of a group contain the ones of its children, so whole subtrees are skipped.
+        private RectF mCullRect;
+
+        private static final float SQRT_2 = 1.4143f;
+        private static final float MIN_BOUNDS_OUTSET = 0.001f;
 
         private Paint mStrokePaint;
         private Paint mFillPaint;
-        private PathMeasure mPathMeasure;
+        // Used to rasterize and draw the coverage masks.
+        private static final int MAX_MASK_SIZE = 2048;
+        private final Rect mMaskRect = new Rect();
+        private Canvas mMaskCanvas;
+        private Paint mMaskPaint;
 
         /////////////////////////////////////////////////////
         // Variables below need to be copied (deep copy if applicable) for mutation.
@@ -960,172 +2620,924 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         float mViewportHeight = 0;
         int mRootAlpha = 0xFF;
         String mRootName = null;
+        // Whether the paths are drawn through their coverage masks, unless
+        // mCoverageMasksBypassed while drawing for RENDER_MODE_PICTURE or RENDER_MODE_MIPMAP.
+        boolean mCoverageCaching;
+        boolean mCoverageMasksBypassed;
 
         final ArrayMap<String, Object> mVGTargetsMap = new ArrayMap<String, Object>();
 
+        // Set by any VGroup / VPath setter which changes the rendered output, cleared
+        // once the cached bitmap has been updated.
+        private boolean mDirty = true;
+        // Incremented on every change, unlike mDirty it is never cleared.
+        int mGeneration;
+        // Set by isSingleColor(), which only walks the paths again once a colour changed or
+        // the display list was compiled again.
+        int mSingleColor;
+        private boolean mSingleColorResult;
+        boolean mSingleColorStale = true;
+        // Union of the bounds of the changed nodes before and after the change, in viewport
+        // coordinates. Only the pixels inside it need to be rasterized again.
+        private final RectF mDirtyRect = new RectF();
+
+        // Layout of RENDER_MODE_LAYERED. The VFullPaths are numbered in draw order, and
+        // each layer holds a run of consecutive paths which are either all static or all
+        // mutated at runtime. Layer i draws the paths in [mLayerStart[i], mLayerStart[i + 1]).
+        static final int MAX_LAYERS = 5;
+        private boolean mLayerLayoutStale = true;
+        private boolean[] mFullPathMutated;
+        int mLayerCount;
+        final int[] mLayerStart = new int[MAX_LAYERS + 1];
+        final boolean[] mLayerDirty = new boolean[MAX_LAYERS];
+
+        // The tree compiled into a flat display list, see compileDisplayList(). Op i is
+        // mOps[i] and its operand mOpNode[i] indexes mGroupTable for OP_GROUP_BEGIN and
+        // OP_GROUP_END, mClipPathTable for OP_CLIP_PATH and mFullPathTable for
+        // OP_FULL_PATH. For the path ops, mOpGroup[i] indexes the group the path belongs
+        // to; for OP_GROUP_BEGIN, it is the index of the matching OP_GROUP_END.
+        private static final int OP_GROUP_BEGIN = 0;
+        private static final int OP_GROUP_END = 1;
+        private static final int OP_CLIP_PATH = 2;
+        private static final int OP_FULL_PATH = 3;
+        private boolean mDisplayListStale = true;
+        private int mOpCount;
+        private int[] mOps;
+        private int[] mOpNode;
+        private int[] mOpGroup;
+        private VGroup[] mGroupTable;
+        // Whether the group has a clip path child, only those groups need their own
+        // canvas save / restore since the clip is the only canvas state the paths change.
+        private boolean[] mGroupClips;
+        private VPath[] mClipPathTable;
+        // Indexed by the draw order index of the paths.
+        private VFullPath[] mFullPathTable;
+        private int mGroupCount;
+        private int mClipPathCount;
+        private int mFullPathCount;
+        // Per nesting level state of the linear passes over the display list.
+        private int mMaxDepth;
+        private int[] mDepthGroup;
+        private boolean[] mDepthMatrixChanged;
+        private boolean[] mDepthChanged;
+
+        // Spatial index of the VFullPath bounds for findPathAt(), rebuilt with the display
+        // list and refitted when the tree changed since the last query.
+        private PathRTree mPathIndex;
+        private boolean mPathIndexStale = true;
+        private int mPathIndexGeneration;
+        private float[] mPathBoxes;
+        // Index in mGroupTable of the group of each VFullPath.
+        private int[] mPathGroups;
+        private int[] mHitCandidates;
+        private static final Region HIT_CLIP = new Region(-1, -1, 1, 1);
+        private final Matrix mHitMatrix = new Matrix();
+        private Region mHitRegion;
+        private Path mHitStrokePath;
+        private Paint mHitStrokePaint;
+
+        // Range of VFullPaths drawn by the current draw() call.
+        private boolean mDrawRange;
+        private int mDrawStart;
+        private int mDrawEnd;
+
         public VPathRenderer() {
             mRootGroup = new VGroup();
-            mPath = new Path();
+            mRootGroup.setOwner(this);
             mRenderPath = new Path();
         }
 
-        public void setRootAlpha(int alpha) {
-            mRootAlpha = alpha;
+        /**
+         * Called by a node whose property changed.
+         *
+         * @param oldBounds     Bounds of the node before the change, in viewport coordinates.
+         * @param firstPath     Draw order index of the first VFullPath affected by the change.
+         * @param pathCount     Number of VFullPaths affected by the change.
+         * @param firstMutation Whether the node was never mutated before.
+         */
+        void invalidate(RectF oldBounds, int firstPath, int pathCount, boolean firstMutation) {
+            mDirty = true;
+            mGeneration++;
+            mDirtyRect.union(oldBounds);
+            if (firstMutation) {
+                // The node moves from a static layer to a mutated one.
+                mLayerLayoutStale = true;
+            }
+            if (mLayerLayoutStale) {
+                return;
+            }
+            final int lastPath = firstPath + pathCount;
+            for (int i = 0; i < mLayerCount; i++) {
+                if (mLayerStart[i] < lastPath && firstPath < mLayerStart[i + 1]) {
+                    mLayerDirty[i] = true;
+                }
+            }
+        }
+
+        void invalidateLayers() {
+            for (int i = 0; i < mLayerCount; i++) {
+                mLayerDirty[i] = true;
+            }
+        }
+
+        /**
+         * Recomputes the layers if a node has been mutated for the first time since the last
+         * call.
+         *
+         * @return whether the layers changed, in which case they all need to be redrawn.
+         */
+        boolean updateLayerLayout() {
+            if (!mLayerLayoutStale) {
+                return false;
+            }
+            compileDisplayList();
+
+            // Find the paths which are mutated, or drawn under a mutated group or clip path.
+            int depth = -1;
+            for (int pc = 0; pc < mOpCount; pc++) {
+                switch (mOps[pc]) {
+                    case OP_GROUP_BEGIN: {
+                        final boolean mutated = (depth >= 0 && mDepthChanged[depth])
+                                || mGroupTable[mOpNode[pc]].mMutated;
+                        mDepthChanged[++depth] = mutated;
+                        break;
+                    }
+                    case OP_GROUP_END:
+                        depth--;
+                        break;
+                    case OP_CLIP_PATH:
+                        // A clip path affects all the following paths of its group.
+                        mDepthChanged[depth] |= mClipPathTable[mOpNode[pc]].mMutated;
+                        break;
+                    case OP_FULL_PATH:
+                        mFullPathMutated[mOpNode[pc]] = mDepthChanged[depth]
+                                || mFullPathTable[mOpNode[pc]].mMutated;
+                        break;
+                }
+            }
+
+            // Split the draw order into runs of static and mutated paths.
+            final int[] runStart = new int[mFullPathCount + 1];
+            final boolean[] runMutated = new boolean[mFullPathCount];
+            int runCount = 0;
+            for (int i = 0; i < mFullPathCount; i++) {
+                if (i == 0 || mFullPathMutated[i] != mFullPathMutated[i - 1]) {
+                    runStart[runCount] = i;
+                    runMutated[runCount] = mFullPathMutated[i];
+                    runCount++;
+                }
+            }
+            runStart[runCount] = mFullPathCount;
+
+            // Too many layers would cost more memory than they save time, so merge the
+            // shortest static runs lying between two mutated runs into their neighbours.
+            while (runCount > MAX_LAYERS) {
+                int shortest = -1;
+                for (int i = 1; i < runCount - 1; i++) {
+                    if (!runMutated[i] && (shortest == -1 || runStart[i + 1] - runStart[i]
+                            < runStart[shortest + 1] - runStart[shortest])) {
+                        shortest = i;
+                    }
+                }
+                System.arraycopy(runStart, shortest + 2, runStart, shortest,
+                        runCount + 1 - (shortest + 2));
+                System.arraycopy(runMutated, shortest + 2, runMutated, shortest,
+                        runCount - (shortest + 2));
+                runCount -= 2;
+            }
+
+            mLayerCount = runCount;
+            System.arraycopy(runStart, 0, mLayerStart, 0, runCount + 1);
+            mLayerLayoutStale = false;
+            invalidateLayers();
+            return true;
+        }
+
+        /**
+         * Compiles the tree into the display list if its structure changed, and numbers the
+         * VFullPaths in draw order.
+         */
+        private void compileDisplayList() {
+            if (!mDisplayListStale) {
+                return;
+            }
+            mGroupCount = 0;
+            mClipPathCount = 0;
+            mFullPathCount = 0;
+            mMaxDepth = 0;
+            countNodes(mRootGroup, 1);
+
+            mOpCount = 2 * mGroupCount + mClipPathCount + mFullPathCount;
+            mOps = new int[mOpCount];
+            mOpNode = new int[mOpCount];
+            mOpGroup = new int[mOpCount];
+            mGroupTable = new VGroup[mGroupCount];
+            mGroupClips = new boolean[mGroupCount];
+            mClipPathTable = new VPath[mClipPathCount];
+            mFullPathTable = new VFullPath[mFullPathCount];
+            mFullPathMutated = new boolean[mFullPathCount];
+            mDepthGroup = new int[mMaxDepth];
+            mDepthMatrixChanged = new boolean[mMaxDepth];
+            mDepthChanged = new boolean[mMaxDepth];
+
+            mOpCount = 0;
+            mGroupCount = 0;
+            mClipPathCount = 0;
+            mFullPathCount = 0;
+            compileGroup(mRootGroup);
+            mDisplayListStale = false;
+            mLayerLayoutStale = true;
+            mPathIndexStale = true;
+        }
+
+        private void countNodes(VGroup group, int depth) {
+            mGroupCount++;
+            mMaxDepth = Math.max(mMaxDepth, depth);
+            for (int i = 0; i < group.mChildren.size(); i++) {
+                Object child = group.mChildren.get(i);
+                if (child instanceof VGroup) {
+                    countNodes((VGroup) child, depth + 1);
+                } else if (((VPath) child).isClipPath()) {
+                    mClipPathCount++;
+                } else {
+                    mFullPathCount++;
+                }
+            }
+        }
+
+        private void compileGroup(VGroup group) {
+            final int groupIndex = mGroupCount++;
+            mGroupTable[groupIndex] = group;
+            final int begin = mOpCount++;
+            mOps[begin] = OP_GROUP_BEGIN;
+            mOpNode[begin] = groupIndex;
+
+            group.mFirstPathIndex = mFullPathCount;
+            for (int i = 0; i < group.mChildren.size(); i++) {
+                Object child = group.mChildren.get(i);
+                if (child instanceof VGroup) {
+                    compileGroup((VGroup) child);
+                    continue;
+                }
+                VPath path = (VPath) child;
+                path.mFirstPathIndex = mFullPathCount;
+                final int op = mOpCount++;
+                mOpGroup[op] = groupIndex;
+                if (path.isClipPath()) {
+                    mGroupClips[groupIndex] = true;
+                    mOps[op] = OP_CLIP_PATH;
+                    mOpNode[op] = mClipPathCount;
+                    mClipPathTable[mClipPathCount++] = path;
+                } else {
+                    mOps[op] = OP_FULL_PATH;
+                    mOpNode[op] = mFullPathCount;
+                    mFullPathTable[mFullPathCount++] = (VFullPath) path;
+                }
+            }
+            group.mPathCount = mFullPathCount - group.mFirstPathIndex;
+            for (int i = 0; i < group.mChildren.size(); i++) {
+                Object child = group.mChildren.get(i);
+                if (child instanceof VPath) {
+                    VPath path = (VPath) child;
+                    // A clip path affects all the following paths of its group.
+                    path.mPathCount = path.isClipPath()
+                            ? mFullPathCount - path.mFirstPathIndex : 1;
+                }
+            }
+
+            final int end = mOpCount++;
+            mOps[end] = OP_GROUP_END;
+            mOpNode[end] = groupIndex;
+            mOpGroup[begin] = end;
+        }
+
+        boolean isDirty() {
+            return mDirty;
+        }
+
+        /**
+         * @return whether all the visible paths are drawn with the same colour, apart from
+         * alpha. mSingleColor is then set to that colour, or else to the first one used.
+         */
+        boolean isSingleColor() {
+            if (mDisplayListStale) {
+                compileDisplayList();
+                mSingleColorStale = true;
+            }
+            if (!mSingleColorStale) {
+                return mSingleColorResult;
+            }
+            boolean singleColor = true;
+            mSingleColor = Color.TRANSPARENT;
+            for (int i = 0; i < mFullPathCount; i++) {
+                final VFullPath fullPath = mFullPathTable[i];
+                singleColor &= addSingleColor(fullPath.mFillColor);
+                singleColor &= addSingleColor(fullPath.mStrokeColor);
+            }
+            mSingleColorResult = singleColor;
+            mSingleColorStale = false;
+            return singleColor;
+        }
+
+        private boolean addSingleColor(int color) {
+            if (Color.alpha(color) == 0) {
+                return true;
+            }
+            color |= 0xFF000000;
+            if (mSingleColor == Color.TRANSPARENT) {
+                mSingleColor = color;
+            }
+            return color == mSingleColor;
+        }
+
+        void clearDirty() {
+            mDirty = false;
+        }
+
+        public void setRootAlpha(int alpha) {
+            mRootAlpha = alpha;
+        }
+
+        public int getRootAlpha() {
+            return mRootAlpha;
+        }
+
+        // setAlpha() and getAlpha() are used mostly for animation purpose, since
+        // Animator like to use alpha from 0 to 1.
+        public void setAlpha(float alpha) {
+            setRootAlpha((int) (alpha * 255));
+        }
+
+        @SuppressWarnings("unused")
+        public float getAlpha() {
+            return getRootAlpha() / 255.0f;
+        }
+
+        public VPathRenderer(VPathRenderer copy) {
+            mRootGroup = new VGroup(copy.mRootGroup, mVGTargetsMap);
+            mRootGroup.setOwner(this);
+            // Only used temporarily while drawing, there is nothing to copy.
+            mRenderPath = new Path();
+            mBaseWidth = copy.mBaseWidth;
+            mBaseHeight = copy.mBaseHeight;
+            mViewportWidth = copy.mViewportWidth;
+            mViewportHeight = copy.mViewportHeight;
+            mChangingConfigurations = copy.mChangingConfigurations;
+            mRootAlpha = copy.mRootAlpha;
+            mRootName = copy.mRootName;
+            mCoverageCaching = copy.mCoverageCaching;
+            if (copy.mRootName != null) {
+                mVGTargetsMap.put(copy.mRootName, this);
+            }
+        }
+
+        /**
+         * Brings the stacked matrices and the bounds of the tree up to date, and adds the
+         * bounds of the nodes changed since the last call to mDirtyRect.
+         */
+        void updateTree() {
+            compileDisplayList();
+            int depth = -1;
+            for (int pc = 0; pc < mOpCount; pc++) {
+                switch (mOps[pc]) {
+                    case OP_GROUP_BEGIN: {
+                        final VGroup group = mGroupTable[mOpNode[pc]];
+                        final VGroup parent = depth >= 0 ? mGroupTable[mDepthGroup[depth]] : null;
+                        // Calculate current group's matrix by preConcat the parent's and
+                        // and the current one on the top of the stack.
+                        // Basically the Mfinal = Mviewport * M0 * M1 * M2;
+                        // Mi the local matrix at level i of the group tree.
+                        // The result is kept until this group or one of its parents changes.
+                        final boolean matrixChanged = (parent != null && mDepthMatrixChanged[depth])
+                                || group.mStackedMatrixDirty;
+                        if (matrixChanged) {
+                            group.mStackedMatrix.set(
+                                    parent != null ? parent.mStackedMatrix : IDENTITY_MATRIX);
+                            group.mStackedMatrix.preConcat(group.getLocalMatrix());
+                            group.mStackedMatrixScale = getMatrixScale(group.mStackedMatrix);
+                            group.mStackedMatrixDirty = false;
+                        }
+                        final boolean changed = (parent != null && mDepthChanged[depth])
+                                || group.mChanged;
+                        group.mChanged = false;
+                        group.mBounds.setEmpty();
+                        depth++;
+                        mDepthGroup[depth] = mOpNode[pc];
+                        mDepthMatrixChanged[depth] = matrixChanged;
+                        mDepthChanged[depth] = changed;
+                        break;
+                    }
+                    case OP_GROUP_END:
+                        depth--;
+                        if (depth >= 0) {
+                            mGroupTable[mDepthGroup[depth]].mBounds.union(
+                                    mGroupTable[mOpNode[pc]].mBounds);
+                        }
+                        break;
+                    case OP_CLIP_PATH: {
+                        final VPath clipPath = mClipPathTable[mOpNode[pc]];
+                        // A clip path changes the pixels of all the following paths.
+                        mDepthChanged[depth] |= clipPath.mChanged;
+                        clipPath.mChanged = false;
+                        break;
+                    }
+                    case OP_FULL_PATH: {
+                        final VGroup group = mGroupTable[mOpGroup[pc]];
+                        final VFullPath fullPath = mFullPathTable[mOpNode[pc]];
+                        final boolean pathChanged = mDepthChanged[depth] || fullPath.mChanged;
+                        fullPath.mChanged = false;
+                        if (mDepthMatrixChanged[depth] || pathChanged) {
+                            updatePathBounds(group, fullPath);
+                        }
+                        if (pathChanged) {
+                            mDirtyRect.union(fullPath.mBounds);
+                        }
+                        group.mBounds.union(fullPath.mBounds);
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Computes the bounds of the pixels painted by the path in viewport coordinates,
+         * empty when the path paints nothing.
+         */
+        private void updatePathBounds(VGroup vGroup, VFullPath fullPath) {
+            final RectF bounds = fullPath.mBounds;
+            final boolean hasFill = fullPath.mFillColor != Color.TRANSPARENT;
+            final boolean hasStroke = fullPath.mStrokeColor != Color.TRANSPARENT;
+            if (vGroup.mStackedMatrixScale == 0 || (!hasFill && !hasStroke)) {
+                bounds.setEmpty();
+                return;
+            }
+            fullPath.getTrimmedPath().computeBounds(bounds, true);
+            vGroup.mStackedMatrix.mapRect(bounds);
+            if (hasStroke) {
+                // Miter joins and square caps can reach further than half the stroke width.
+                float extent = 1;
+                if (fullPath.mStrokeLineJoin == Paint.Join.MITER) {
+                    extent = Math.max(extent, fullPath.mStrokeMiterlimit);
+                }
+                if (fullPath.mStrokeLineCap == Paint.Cap.SQUARE) {
+                    extent = Math.max(extent, SQRT_2);
+                }
+                // Keep hairlines from producing empty bounds.
+                final float outset = Math.max(MIN_BOUNDS_OUTSET,
+                        fullPath.mStrokeWidth * vGroup.mStackedMatrixScale * extent / 2);
+                bounds.inset(-outset, -outset);
+            }
+        }
+
+        /**
+         * Finds the topmost VFullPath painting the point (x, y) of the viewport. Its fill
+         * and stroke are tested exactly, but the clip paths are not taken into account.
+         *
+         * @param scale Size of a viewport unit in pixels, which is the precision of the test.
+         * @return the path, or null if no path paints the point.
+         */
+        VFullPath findPathAt(float x, float y, float scale) {
+            updateTree();
+            updatePathIndex();
+            final int count = mPathIndex.query(x, y, mHitCandidates);
+            // The path indexes are in draw order, test from the top.
+            Arrays.sort(mHitCandidates, 0, count);
+            for (int i = count - 1; i >= 0; i--) {
+                final int index = mHitCandidates[i];
+                if (hitTest(mGroupTable[mPathGroups[index]], mFullPathTable[index], x, y,
+                        scale)) {
+                    return mFullPathTable[index];
+                }
+            }
+            return null;
+        }
+
+        private void updatePathIndex() {
+            if (!mPathIndexStale && mPathIndexGeneration == mGeneration) {
+                return;
+            }
+            if (mPathIndexStale) {
+                mPathBoxes = new float[4 * mFullPathCount];
+                mPathGroups = new int[mFullPathCount];
+                mHitCandidates = new int[mFullPathCount];
+                for (int pc = 0; pc < mOpCount; pc++) {
+                    if (mOps[pc] == OP_FULL_PATH) {
+                        mPathGroups[mOpNode[pc]] = mOpGroup[pc];
+                    }
+                }
+            }
+            for (int i = 0; i < mFullPathCount; i++) {
+                final RectF bounds = mFullPathTable[i].mBounds;
+                mPathBoxes[4 * i] = bounds.left;
+                mPathBoxes[4 * i + 1] = bounds.top;
+                mPathBoxes[4 * i + 2] = bounds.right;
+                mPathBoxes[4 * i + 3] = bounds.bottom;
+            }
+            if (mPathIndexStale) {
+                if (mPathIndex == null) {
+                    mPathIndex = new PathRTree();
+                }
+                mPathIndex.build(mPathBoxes, mFullPathCount);
+                mPathIndexStale = false;
+            } else {
+                mPathIndex.refit(mPathBoxes);
+            }
+            mPathIndexGeneration = mGeneration;
         }
 
-        public int getRootAlpha() {
-            return mRootAlpha;
-        }
+        /**
+         * Rasterizes the pixel at (x, y) of the path like drawFullPath() would.
+         */
+        private boolean hitTest(VGroup vGroup, VFullPath fullPath, float x, float y,
+                                float scale) {
+            // Map the viewport so that (x, y) lands on the pixel (0, 0).
+            mHitMatrix.set(vGroup.mStackedMatrix);
+            mHitMatrix.postTranslate(-x, -y);
+            mHitMatrix.postScale(scale, scale);
+            mRenderPath.reset();
+            mRenderPath.addPath(fullPath.getTrimmedPath(), mHitMatrix);
+            if (mHitRegion == null) {
+                mHitRegion = new Region();
+            }
 
-        // setAlpha() and getAlpha() are used mostly for animation purpose, since
-        // Animator like to use alpha from 0 to 1.
-        public void setAlpha(float alpha) {
-            setRootAlpha((int) (alpha * 255));
-        }
+            if (fullPath.mFillColor != Color.TRANSPARENT
+                    && mHitRegion.setPath(mRenderPath, HIT_CLIP)
+                    && mHitRegion.contains(0, 0)) {
+                return true;
+            }
 
-        @SuppressWarnings("unused")
-        public float getAlpha() {
-            return getRootAlpha() / 255.0f;
+            if (fullPath.mStrokeColor != Color.TRANSPARENT) {
+                if (mHitStrokePaint == null) {
+                    mHitStrokePaint = new Paint();
+                    mHitStrokePaint.setStyle(Paint.Style.STROKE);
+                    mHitStrokePath = new Path();
+                }
+                final Paint strokePaint = mHitStrokePaint;
+                if (fullPath.mStrokeLineJoin != null) {
+                    strokePaint.setStrokeJoin(fullPath.mStrokeLineJoin);
+                }
+                if (fullPath.mStrokeLineCap != null) {
+                    strokePaint.setStrokeCap(fullPath.mStrokeLineCap);
+                }
+                strokePaint.setStrokeMiter(fullPath.mStrokeMiterlimit);
+                // Hairlines still cover a pixel.
+                strokePaint.setStrokeWidth(Math.max(1,
+                        fullPath.mStrokeWidth * vGroup.mStackedMatrixScale * scale));
+                mHitStrokePath.reset();
+                strokePaint.getFillPath(mRenderPath, mHitStrokePath);
+                return mHitRegion.setPath(mHitStrokePath, HIT_CLIP) && mHitRegion.contains(0, 0);
+            }
+            return false;
         }
 
-        public VPathRenderer(VPathRenderer copy) {
-            mRootGroup = new VGroup(copy.mRootGroup, mVGTargetsMap);
-            mPath = new Path(copy.mPath);
-            mRenderPath = new Path(copy.mRenderPath);
-            mBaseWidth = copy.mBaseWidth;
-            mBaseHeight = copy.mBaseHeight;
-            mViewportWidth = copy.mViewportWidth;
-            mViewportHeight = copy.mViewportHeight;
-            mChangingConfigurations = copy.mChangingConfigurations;
-            mRootAlpha = copy.mRootAlpha;
-            mRootName = copy.mRootName;
-            if (copy.mRootName != null) {
-                mVGTargetsMap.put(copy.mRootName, this);
+        /**
+         * Maps the area changed since the last clearDirtyRect() to a w * h bitmap.
+         *
+         * @return false when no pixel changed.
+         */
+        boolean getDirtyRect(int w, int h, Rect outRect) {
+            if (mDirtyRect.isEmpty()) {
+                return false;
             }
+            final float scaleX = w / mViewportWidth;
+            final float scaleY = h / mViewportHeight;
+            mTmpRectF.set(mDirtyRect.left * scaleX, mDirtyRect.top * scaleY,
+                    mDirtyRect.right * scaleX, mDirtyRect.bottom * scaleY);
+            mTmpRectF.roundOut(outRect);
+            // Leave room for anti-aliasing.
+            outRect.inset(-1, -1);
+            return outRect.intersect(0, 0, w, h);
         }
 
-        private void drawGroupTree(VGroup currentGroup, Matrix currentMatrix,
-                                   Canvas canvas, int w, int h, ColorFilter filter) {
-            // Calculate current group's matrix by preConcat the parent's and
-            // and the current one on the top of the stack.
-            // Basically the Mfinal = Mviewport * M0 * M1 * M2;
-            // Mi the local matrix at level i of the group tree.
-            currentGroup.mStackedMatrix.set(currentMatrix);
-
-            currentGroup.mStackedMatrix.preConcat(currentGroup.mLocalMatrix);
-
-            // Save the current clip information, which is local to this group.
-            canvas.save();
+        void clearDirtyRect() {
+            mDirtyRect.setEmpty();
+        }
 
+        private void drawDisplayList(Canvas canvas, int w, int h, ColorFilter filter) {
             // Draw the group tree in the same order as the XML file.
-            for (int i = 0; i < currentGroup.mChildren.size(); i++) {
-                Object child = currentGroup.mChildren.get(i);
-                if (child instanceof VGroup) {
-                   VGroup childGroup = (VGroup) child;
-                    drawGroupTree(childGroup, currentGroup.mStackedMatrix,
-                            canvas, w, h, filter);
-                } else if (child instanceof VPath) {
-                    VPath childPath = (VPath) child;
-                    drawPath(currentGroup, childPath, canvas, w, h, filter);
+            for (int pc = 0; pc < mOpCount; pc++) {
+                switch (mOps[pc]) {
+                    case OP_GROUP_BEGIN: {
+                        final VGroup group = mGroupTable[mOpNode[pc]];
+                        if ((mDrawRange && (group.mFirstPathIndex >= mDrawEnd
+                                || group.mFirstPathIndex + group.mPathCount <= mDrawStart))
+                                || (mCullRect != null
+                                && !RectF.intersects(group.mBounds, mCullRect))) {
+                            // None of the paths of this group needs to be drawn.
+                            pc = mOpGroup[pc];
+                            break;
+                        }
+                        if (mGroupClips[mOpNode[pc]]) {
+                            // Save the current clip information, which is local to this group.
+                            canvas.save();
+                        }
+                        break;
+                    }
+                    case OP_GROUP_END:
+                        if (mGroupClips[mOpNode[pc]]) {
+                            canvas.restore();
+                        }
+                        break;
+                    case OP_CLIP_PATH:
+                        drawClipPath(mGroupTable[mOpGroup[pc]], mClipPathTable[mOpNode[pc]],
+                                canvas, w, h);
+                        break;
+                    case OP_FULL_PATH: {
+                        final int index = mOpNode[pc];
+                        final VFullPath fullPath = mFullPathTable[index];
+                        if (index < mDrawStart || index >= mDrawEnd || (mCullRect != null
+                                && !RectF.intersects(fullPath.mBounds, mCullRect))) {
+                            break;
+                        }
+                        drawFullPath(mGroupTable[mOpGroup[pc]], fullPath, canvas, w, h, filter);
+                        break;
+                    }
                 }
             }
+        }
 
-            canvas.restore();
+        /**
+         * Copies the properties which can be changed at runtime from source, the renderer this
+         * one was copied from or another copy of the same tree. Only allocates when a path
+         * data changes shape.
+         */
+        void syncFrom(VPathRenderer source) {
+            mCoverageCaching = source.mCoverageCaching;
+            syncGroup(mRootGroup, source.mRootGroup);
+        }
+
+        private static void syncGroup(VGroup group, VGroup source) {
+            group.setRotation(source.mRotate);
+            group.setPivotX(source.mPivotX);
+            group.setPivotY(source.mPivotY);
+            group.setScaleX(source.mScaleX);
+            group.setScaleY(source.mScaleY);
+            group.setTranslateX(source.mTranslateX);
+            group.setTranslateY(source.mTranslateY);
+            for (int i = 0; i < group.mChildren.size(); i++) {
+                final Object child = group.mChildren.get(i);
+                final Object sourceChild = source.mChildren.get(i);
+                if (child instanceof VGroup) {
+                    syncGroup((VGroup) child, (VGroup) sourceChild);
+                    continue;
+                }
+                final PathParser.PathDataNode[] nodes = ((VPath) sourceChild).getNodes();
+                if (nodes != null) {
+                    // Returns early when the params are the same.
+                    ((VPath) child).setPathData(nodes);
+                }
+                if (child instanceof VFullPath) {
+                    final VFullPath path = (VFullPath) child;
+                    final VFullPath sourcePath = (VFullPath) sourceChild;
+                    path.setFillColor(sourcePath.mFillColor);
+                    path.setFillAlpha(sourcePath.mFillAlpha);
+                    path.setStrokeColor(sourcePath.mStrokeColor);
+                    path.setStrokeAlpha(sourcePath.mStrokeAlpha);
+                    path.setStrokeWidth(sourcePath.mStrokeWidth);
+                    path.setTrimPathStart(sourcePath.mTrimPathStart);
+                    path.setTrimPathEnd(sourcePath.mTrimPathEnd);
+                    path.setTrimPathOffset(sourcePath.mTrimPathOffset);
+                }
+            }
         }
 
         public void draw(Canvas canvas, int w, int h, ColorFilter filter) {
             // Traverse the tree in pre-order to draw.
-            drawGroupTree(mRootGroup, IDENTITY_MATRIX, canvas, w, h, filter);
+            updateTree();
+            mDrawRange = false;
+            mDrawStart = 0;
+            mDrawEnd = Integer.MAX_VALUE;
+            if (setCullRect(canvas, w, h, null)) {
+                drawDisplayList(canvas, w, h, filter);
+            }
+            mCullRect = null;
+        }
+
+        /**
+         * Draws the VFullPaths whose draw order index is in [start, end), the clip paths are
+         * always applied. Only valid once updateLayerLayout() has numbered the paths.
+         */
+        public void draw(Canvas canvas, int w, int h, ColorFilter filter, int start, int end) {
+            updateTree();
+            mDrawRange = true;
+            mDrawStart = start;
+            mDrawEnd = end;
+            if (setCullRect(canvas, w, h, null)) {
+                drawDisplayList(canvas, w, h, filter);
+            }
+            mCullRect = null;
+        }
+
+        /**
+         * Only redraws the paths intersecting dirtyRect, a rectangle of the w * h bitmap
+         * the canvas draws into. The caller is responsible for clipping and clearing it, and
+         * for calling updateTree() first, once for all the rectangles of a frame.
+         */
+        public void draw(Canvas canvas, int w, int h, ColorFilter filter, Rect dirtyRect) {
+            mDrawRange = false;
+            mDrawStart = 0;
+            mDrawEnd = Integer.MAX_VALUE;
+            if (setCullRect(canvas, w, h, dirtyRect)) {
+                drawDisplayList(canvas, w, h, filter);
+            }
+            mCullRect = null;
         }
 
-        private void drawPath(VGroup vGroup, VPath vPath, Canvas canvas, int w, int h,
-                              ColorFilter filter) {
+        /**
+         * Sets mCullRect to the clip of the canvas, intersected with rect when it is not
+         * null, and mapped to the viewport. Paths outside of the visible part of a zoomed in
+         * drawable, or of the tile being drawn, are then skipped along with their groups.
+         *
+         * @return false when the clip is empty and nothing needs to be drawn.
+         */
+        private boolean setCullRect(Canvas canvas, int w, int h, Rect rect) {
+            final Rect clip = mCullClipRect;
+            if (!canvas.getClipBounds(clip) || (rect != null && !clip.intersect(rect))) {
+                return false;
+            }
             final float scaleX = w / mViewportWidth;
             final float scaleY = h / mViewportHeight;
-            final float minScale = Math.min(scaleX, scaleY);
-            final Matrix groupStackedMatrix = vGroup.mStackedMatrix;
-
-            mFinalPathMatrix.set(groupStackedMatrix);
-            mFinalPathMatrix.postScale(scaleX, scaleY);
+            // Anti-aliasing reaches a pixel further than the path bounds.
+            mCullRectF.set((clip.left - 1) / scaleX, (clip.top - 1) / scaleY,
+                    (clip.right + 1) / scaleX, (clip.bottom + 1) / scaleY);
+            mCullRect = mCullRectF;
+            return true;
+        }
 
+        private void drawClipPath(VGroup vGroup, VPath clipPath, Canvas canvas, int w, int h) {
+            if (vGroup.mStackedMatrixScale == 0) {
+                // When either x or y is scaled to 0, we don't need to draw anything.
+                return;
+            }
+            setFinalPathMatrix(vGroup, w, h);
+            mRenderPath.reset();
+            mRenderPath.addPath(clipPath.getPath(), mFinalPathMatrix);
+            canvas.clipPath(mRenderPath);
+        }
 
-            final float matrixScale = getMatrixScale(groupStackedMatrix);
+        private void drawFullPath(VGroup vGroup, VFullPath fullPath, Canvas canvas, int w, int h,
+                                  ColorFilter filter) {
+            final float matrixScale = vGroup.mStackedMatrixScale;
             if (matrixScale == 0) {
                 // When either x or y is scaled to 0, we don't need to draw anything.
                 return;
             }
-            vPath.toPath(mPath);
-            final Path path = mPath;
-
+            final float minScale = setFinalPathMatrix(vGroup, w, h);
             mRenderPath.reset();
+            mRenderPath.addPath(fullPath.getTrimmedPath(), mFinalPathMatrix);
 
-            if (vPath.isClipPath()) {
-                mRenderPath.addPath(path, mFinalPathMatrix);
-                canvas.clipPath(mRenderPath);
-            } else {
-                VFullPath fullPath = (VFullPath) vPath;
-                if (fullPath.mTrimPathStart != 0.0f || fullPath.mTrimPathEnd != 1.0f) {
-                    float start = (fullPath.mTrimPathStart + fullPath.mTrimPathOffset) % 1.0f;
-                    float end = (fullPath.mTrimPathEnd + fullPath.mTrimPathOffset) % 1.0f;
-
-                    if (mPathMeasure == null) {
-                        mPathMeasure = new PathMeasure();
-                    }
-                    mPathMeasure.setPath(mPath, false);
-
-                    float len = mPathMeasure.getLength();
-                    start = start * len;
-                    end = end * len;
-                    path.reset();
-                    if (start > end) {
-                        mPathMeasure.getSegment(start, len, path, true);
-                        mPathMeasure.getSegment(0f, end, path, true);
-                    } else {
-                        mPathMeasure.getSegment(start, end, path, true);
-                    }
-                    path.rLineTo(0, 0); // fix bug in measure
+            if (fullPath.mFillColor != Color.TRANSPARENT) {
+                if (mFillPaint == null) {
+                    mFillPaint = new Paint();
+                    mFillPaint.setStyle(Paint.Style.FILL);
+                    mFillPaint.setAntiAlias(true);
                 }
-                mRenderPath.addPath(path, mFinalPathMatrix);
-
-                if (fullPath.mFillColor != Color.TRANSPARENT) {
-                    if (mFillPaint == null) {
-                        mFillPaint = new Paint();
-                        mFillPaint.setStyle(Paint.Style.FILL);
-                        mFillPaint.setAntiAlias(true);
-                    }
 
-                    final Paint fillPaint = mFillPaint;
-                    fillPaint.setColor(applyAlpha(fullPath.mFillColor, fullPath.mFillAlpha));
-                    fillPaint.setColorFilter(filter);
+                final Paint fillPaint = mFillPaint;
+                fillPaint.setColor(applyAlpha(fullPath.mFillColor, fullPath.mFillAlpha));
+                fillPaint.setColorFilter(filter);
+                if (!mCoverageCaching || mCoverageMasksBypassed
+                        || !drawCoverageMask(canvas, fullPath, fillPaint, false, w, h)) {
                     canvas.drawPath(mRenderPath, fillPaint);
                 }
+            }
 
-                if (fullPath.mStrokeColor != Color.TRANSPARENT) {
-                    if (mStrokePaint == null) {
-                        mStrokePaint = new Paint();
-                        mStrokePaint.setStyle(Paint.Style.STROKE);
-                        mStrokePaint.setAntiAlias(true);
-                    }
+            if (fullPath.mStrokeColor != Color.TRANSPARENT) {
+                if (mStrokePaint == null) {
+                    mStrokePaint = new Paint();
+                    mStrokePaint.setStyle(Paint.Style.STROKE);
+                    mStrokePaint.setAntiAlias(true);
+                }
 
-                    final Paint strokePaint = mStrokePaint;
-                    if (fullPath.mStrokeLineJoin != null) {
-                        strokePaint.setStrokeJoin(fullPath.mStrokeLineJoin);
-                    }
+                final Paint strokePaint = mStrokePaint;
+                if (fullPath.mStrokeLineJoin != null) {
+                    strokePaint.setStrokeJoin(fullPath.mStrokeLineJoin);
+                }
 
-                    if (fullPath.mStrokeLineCap != null) {
-                        strokePaint.setStrokeCap(fullPath.mStrokeLineCap);
-                    }
+                if (fullPath.mStrokeLineCap != null) {
+                    strokePaint.setStrokeCap(fullPath.mStrokeLineCap);
+                }
 
-                    strokePaint.setStrokeMiter(fullPath.mStrokeMiterlimit);
-                    strokePaint.setColor(applyAlpha(fullPath.mStrokeColor, fullPath.mStrokeAlpha));
-                    strokePaint.setColorFilter(filter);
-                    final float finalStrokeScale = minScale * matrixScale;
-                    strokePaint.setStrokeWidth(fullPath.mStrokeWidth * finalStrokeScale);
+                strokePaint.setStrokeMiter(fullPath.mStrokeMiterlimit);
+                strokePaint.setColor(applyAlpha(fullPath.mStrokeColor, fullPath.mStrokeAlpha));
+                strokePaint.setColorFilter(filter);
+                final float finalStrokeScale = minScale * matrixScale;
+                strokePaint.setStrokeWidth(fullPath.mStrokeWidth * finalStrokeScale);
+                if (!mCoverageCaching || mCoverageMasksBypassed
+                        || !drawCoverageMask(canvas, fullPath, strokePaint, true, w, h)) {
                     canvas.drawPath(mRenderPath, strokePaint);
                 }
             }
         }
 
+        /**
+         * Draws the fill or the stroke of fullPath with the colour of paint through its
+         * coverage mask. The mask is rasterized again from mRenderPath only when the geometry
+         * of the path or its final matrix changed, so a colour or alpha change costs a single
+         * drawBitmap().
+         *
+         * @return false when the path is too large to be cached, it must be drawn directly.
+         */
+        private boolean drawCoverageMask(Canvas canvas, VFullPath fullPath, Paint paint,
+                                         boolean stroke, int w, int h) {
+            CoverageMask mask = stroke ? fullPath.mStrokeMask : fullPath.mFillMask;
+            if (mask == null) {
+                mask = new CoverageMask();
+                if (stroke) {
+                    fullPath.mStrokeMask = mask;
+                } else {
+                    fullPath.mFillMask = mask;
+                }
+            }
+            if (mask.mStale || !mask.mMatrix.equals(mFinalPathMatrix)) {
+                final RectF bounds = fullPath.mBounds;
+                final float scaleX = w / mViewportWidth;
+                final float scaleY = h / mViewportHeight;
+                mTmpRectF.set(bounds.left * scaleX, bounds.top * scaleY,
+                        bounds.right * scaleX, bounds.bottom * scaleY);
+                mTmpRectF.roundOut(mMaskRect);
+                // Leave room for anti-aliasing.
+                mMaskRect.inset(-1, -1);
+                if (bounds.isEmpty() || !mMaskRect.intersect(0, 0, w, h)) {
+                    mask.mBitmap = null;
+                } else if (mMaskRect.width() > MAX_MASK_SIZE
+                        || mMaskRect.height() > MAX_MASK_SIZE) {
+                    mask.mBitmap = null;
+                    mask.mStale = true;
+                    return false;
+                } else {
+                    rasterizeCoverageMask(mask, paint);
+                }
+                mask.mMatrix.set(mFinalPathMatrix);
+                mask.mStale = false;
+            }
+            if (mask.mBitmap != null) {
+                if (mMaskPaint == null) {
+                    mMaskPaint = new Paint();
+                }
+                // An ALPHA_8 bitmap is drawn with the colour of the paint.
+                mMaskPaint.setColor(paint.getColor());
+                mMaskPaint.setColorFilter(paint.getColorFilter());
+                canvas.drawBitmap(mask.mBitmap, mask.mLeft, mask.mTop, mMaskPaint);
+            }
+            return true;
+        }
+
+        /**
+         * Draws mRenderPath with paint into the mMaskRect area of the mask.
+         */
+        private void rasterizeCoverageMask(CoverageMask mask, Paint paint) {
+            final int width = mMaskRect.width();
+            final int height = mMaskRect.height();
+            if (mask.mBitmap == null || mask.mBitmap.getWidth() != width
+                    || mask.mBitmap.getHeight() != height) {
+                mask.mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+            } else {
+                mask.mBitmap.eraseColor(Color.TRANSPARENT);
+            }
+            mask.mLeft = mMaskRect.left;
+            mask.mTop = mMaskRect.top;
+            if (mMaskCanvas == null) {
+                mMaskCanvas = new Canvas();
+            }
+            mMaskCanvas.setBitmap(mask.mBitmap);
+            final int saveCount = mMaskCanvas.save();
+            mMaskCanvas.translate(-mask.mLeft, -mask.mTop);
+            final int color = paint.getColor();
+            final ColorFilter filter = paint.getColorFilter();
+            paint.setColor(Color.BLACK);
+            paint.setColorFilter(null);
+            mMaskCanvas.drawPath(mRenderPath, paint);
+            paint.setColor(color);
+            paint.setColorFilter(filter);
+            mMaskCanvas.restoreToCount(saveCount);
+            mMaskCanvas.setBitmap(null);
+        }
+
+        /**
+         * Drops the coverage masks of all the paths.
+         */
+        void releaseCoverageMasks() {
+            compileDisplayList();
+            for (int i = 0; i < mFullPathCount; i++) {
+                mFullPathTable[i].mFillMask = null;
+                mFullPathTable[i].mStrokeMask = null;
+            }
+        }
+
+        /**
+         * Maps the viewport coordinates of vGroup to the w * h bitmap in mFinalPathMatrix.
+         *
+         * @return the smaller of the two viewport scales.
+         */
+        private float setFinalPathMatrix(VGroup vGroup, int w, int h) {
+            final float scaleX = w / mViewportWidth;
+            final float scaleY = h / mViewportHeight;
+            mFinalPathMatrix.set(vGroup.mStackedMatrix);
+            mFinalPathMatrix.postScale(scaleX, scaleY);
+            return Math.min(scaleX, scaleY);
+        }
+
         private static float cross(float v1x, float v1y, float v2x, float v2y) {
             return v1x * v2y - v1y * v2x;
         }
@@ -1141,7 +3553,11 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             // scale on x and y axis, and take the minimal of these two.
             // For skew case, an unit square will mapped to a parallelogram. And this function will
             // return the minimal height of the 2 bases.
-            float[] unitVectors = new float[]{0, 1, 1, 0};
+            final float[] unitVectors = mTmpUnitVectors;
+            unitVectors[0] = 0;
+            unitVectors[1] = 1;
+            unitVectors[2] = 1;
+            unitVectors[3] = 0;
             groupStackedMatrix.mapVectors(unitVectors);
             float scaleX = (float) Math.hypot(unitVectors[0], unitVectors[1]);
             float scaleY = (float) Math.hypot(unitVectors[2], unitVectors[3]);
@@ -1161,9 +3577,16 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
     }
 
     public static class VGroup {
-        // mStackedMatrix is only used temporarily when drawing, it combines all
-        // the parents' local matrices with the current one.
+        // mStackedMatrix is only used when drawing, it combines all the parents'
+        // local matrices with the current one. It is only recomputed when this group
+        // or one of its parents changed since the last draw.
         private final Matrix mStackedMatrix = new Matrix();
+        private float mStackedMatrixScale;
+        private boolean mStackedMatrixDirty = true;
+        // Union of the bounds of the children in viewport coordinates, and whether a
+        // property changed since the bounds were last updated.
+        final RectF mBounds = new RectF();
+        boolean mChanged;
 
         /////////////////////////////////////////////////////
         // Variables below need to be copied (deep copy if applicable) for mutation.
@@ -1178,12 +3601,22 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         private float mTranslateY = 0;
 
         // mLocalMatrix is updated based on the update of transformation information,
-        // either parsed from the XML or by animation.
+        // either parsed from the XML or by animation. It is rebuilt lazily, so that
+        // setting several properties in a row only rebuilds it once.
         private final Matrix mLocalMatrix = new Matrix();
+        private boolean mLocalMatrixDirty = true;
         int mChangingConfigurations;
         private int[] mThemeAttrs;
         private String mGroupName = null;
 
+        // The renderer drawing this group, notified whenever a property changes.
+        VPathRenderer mOwner;
+        // Whether a property has been changed at runtime, see RENDER_MODE_LAYERED.
+        boolean mMutated;
+        // Draw order index of the first VFullPath of this group, and the number of them.
+        int mFirstPathIndex;
+        int mPathCount;
+
         public VGroup(VGroup copy, ArrayMap<String, Object> targetsMap) {
             mRotate = copy.mRotate;
             mPivotX = copy.mPivotX;
@@ -1195,12 +3628,11 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             mThemeAttrs = copy.mThemeAttrs;
             mGroupName = copy.mGroupName;
             mChangingConfigurations = copy.mChangingConfigurations;
+            mMutated = copy.mMutated;
             if (mGroupName != null) {
                 targetsMap.put(mGroupName, this);
             }
 
-            mLocalMatrix.set(copy.mLocalMatrix);
-
             final ArrayList<Object> children = copy.mChildren;
             for (int i = 0; i < children.size(); i++) {
                 Object copyChild = children.get(i);
@@ -1231,7 +3663,35 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             return mGroupName;
         }
 
+        /**
+         * Attaches this group and all of its children to the given renderer.
+         */
+        void setOwner(VPathRenderer owner) {
+            mOwner = owner;
+            for (int i = 0; i < mChildren.size(); i++) {
+                Object child = mChildren.get(i);
+                if (child instanceof VGroup) {
+                    ((VGroup) child).setOwner(owner);
+                } else {
+                    ((VPath) child).mOwner = owner;
+                }
+            }
+        }
+
+        void invalidateOwner() {
+            final boolean firstMutation = !mMutated;
+            mMutated = true;
+            mChanged = true;
+            if (mOwner != null) {
+                mOwner.invalidate(mBounds, mFirstPathIndex, mPathCount, firstMutation);
+            }
+        }
+
         public Matrix getLocalMatrix() {
+            if (mLocalMatrixDirty) {
+                updateLocalMatrix();
+                mLocalMatrixDirty = false;
+            }
             return mLocalMatrix;
         }
 
@@ -1275,7 +3735,7 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
                 mGroupName = groupName;
             }
 
-            updateLocalMatrix();
+            mLocalMatrixDirty = true;
         }
 
         private void updateLocalMatrix() {
@@ -1288,6 +3748,12 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             mLocalMatrix.postTranslate(mTranslateX + mPivotX, mTranslateY + mPivotY);
         }
 
+        private void invalidateLocalMatrix() {
+            mLocalMatrixDirty = true;
+            mStackedMatrixDirty = true;
+            invalidateOwner();
+        }
+
         /* Setters and Getters, used by animator from AnimatedVectorDrawable. */
         @SuppressWarnings("unused")
         public float getRotation() {
@@ -1298,7 +3764,7 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         public void setRotation(float rotation) {
             if (rotation != mRotate) {
                 mRotate = rotation;
-                updateLocalMatrix();
+                invalidateLocalMatrix();
             }
         }
 
@@ -1311,7 +3777,7 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         public void setPivotX(float pivotX) {
             if (pivotX != mPivotX) {
                 mPivotX = pivotX;
-                updateLocalMatrix();
+                invalidateLocalMatrix();
             }
         }
 
@@ -1324,7 +3790,7 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         public void setPivotY(float pivotY) {
             if (pivotY != mPivotY) {
                 mPivotY = pivotY;
-                updateLocalMatrix();
+                invalidateLocalMatrix();
             }
         }
 
@@ -1337,7 +3803,7 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         public void setScaleX(float scaleX) {
             if (scaleX != mScaleX) {
                 mScaleX = scaleX;
-                updateLocalMatrix();
+                invalidateLocalMatrix();
             }
         }
 
@@ -1350,7 +3816,7 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         public void setScaleY(float scaleY) {
             if (scaleY != mScaleY) {
                 mScaleY = scaleY;
-                updateLocalMatrix();
+                invalidateLocalMatrix();
             }
         }
 
@@ -1363,7 +3829,7 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         public void setTranslateX(float translateX) {
             if (translateX != mTranslateX) {
                 mTranslateX = translateX;
-                updateLocalMatrix();
+                invalidateLocalMatrix();
             }
         }
 
@@ -1376,8 +3842,31 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         public void setTranslateY(float translateY) {
             if (translateY != mTranslateY) {
                 mTranslateY = translateY;
-                updateLocalMatrix();
+                invalidateLocalMatrix();
+            }
+        }
+    }
+
+    /**
+     * A pathData string parsed on first use. It is shared by the copies of the path, so that
+     * it is parsed once for all of them, possibly on another thread, see warmUp().
+     */
+    private static class LazyPathData {
+        private final String mPathData;
+        private PathParser.PathDataNode[] mNodes;
+
+        LazyPathData(String pathData) {
+            // Invalid characters still fail the inflation, only malformed numbers are
+            // reported on first use.
+            PathParser.checkPathData(pathData);
+            mPathData = pathData;
+        }
+
+        synchronized PathParser.PathDataNode[] getNodes() {
+            if (mNodes == null) {
+                mNodes = PathParser.createNodesFromPathData(mPathData);
             }
+            return mNodes;
         }
     }
 
@@ -1386,9 +3875,38 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
      */
     private static class VPath {
         protected PathParser.PathDataNode[] mNodes = null;
+        // Whether mNodes is shared with a copy of this path, or the path this one was copied
+        // from. Shared nodes are copied before being written, see ensureNodesOwned().
+        private boolean mNodesShared;
+        // The inflated pathData until it is first needed, mNodes is then set from it.
+        LazyPathData mLazyPathData;
         String mPathName;
         int mChangingConfigurations;
 
+        // The renderer drawing this path, notified whenever a property changes.
+        VPathRenderer mOwner;
+        // Whether a property has been changed at runtime, see RENDER_MODE_LAYERED.
+        boolean mMutated;
+        // Draw order index of the first VFullPath affected by this path, and the number
+        // of them. For a clip path these are the paths following it in its group.
+        int mFirstPathIndex;
+        int mPathCount;
+
+        // Bounds of the pixels painted by this path in viewport coordinates, and whether a
+        // property changed since the bounds were last updated.
+        final RectF mBounds = new RectF();
+        boolean mChanged;
+
+        // mNodes converted to a Path, only rebuilt after the path data changes.
+        private final Path mPath = new Path();
+        private boolean mPathDirty = true;
+
+        // Set by setMorph(), the end points of the morph with the same structure as mNodes.
+        // They are never modified, so copies can share them.
+        private PathParser.PathDataNode[] mMorphFrom;
+        private PathParser.PathDataNode[] mMorphTo;
+        private float mMorphFraction;
+
         public VPath() {
             // Empty constructor.
         }
@@ -1399,12 +3917,25 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
                 indent += "    ";
             }
             Log.v(LOGTAG, indent + "current path is :" + mPathName +
-                    " pathData is " + NodesToString(mNodes));
+                    " pathData is " + NodesToString(getNodes()));
 
         }
 
         public String getPathAsString(){
-            return NodesToString(mNodes);
+            return NodesToString(getNodes());
+        }
+
+        /**
+         * @return mNodes, after parsing the inflated pathData if it was not needed yet.
+         */
+        PathParser.PathDataNode[] getNodes() {
+            if (mLazyPathData != null) {
+                mNodes = mLazyPathData.getNodes();
+                // The other copies of the path use the same nodes.
+                mNodesShared = mNodes != null;
+                mLazyPathData = null;
+            }
+            return mNodes;
         }
 
         public String NodesToString(PathParser.PathDataNode[] nodes) {
@@ -1422,14 +3953,47 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         public VPath(VPath copy) {
             mPathName = copy.mPathName;
             mChangingConfigurations = copy.mChangingConfigurations;
-            mNodes = PathParser.deepCopyNodes(copy.mNodes);
+            mMutated = copy.mMutated;
+            // Most paths of a mutated drawable keep their path data, so it is only copied
+            // once either side writes it.
+            mNodes = copy.mNodes;
+            mNodesShared = mNodes != null;
+            copy.mNodesShared = mNodesShared;
+            mLazyPathData = copy.mLazyPathData;
+            mMorphFrom = copy.mMorphFrom;
+            mMorphTo = copy.mMorphTo;
+            mMorphFraction = copy.mMorphFraction;
         }
 
         public void toPath(Path path) {
             path.reset();
-            if (mNodes != null) {
-                PathParser.PathDataNode.nodesToPath(mNodes, path);
+            final PathParser.PathDataNode[] nodes = getNodes();
+            if (nodes != null) {
+                PathParser.PathDataNode.nodesToPath(nodes, path);
+            }
+        }
+
+        /**
+         * @return the cached Path of this node, which must not be modified by the caller.
+         */
+        Path getPath() {
+            if (mPathDirty) {
+                mPath.reset();
+                final PathParser.PathDataNode[] nodes = getNodes();
+                if (nodes != null) {
+                    if (mOwner != null) {
+                        PathParser.PathDataNode.nodesToPath(nodes, mPath, mOwner.mTmpPathCoords);
+                    } else {
+                        PathParser.PathDataNode.nodesToPath(nodes, mPath);
+                    }
+                }
+                mPathDirty = false;
             }
+            return mPath;
+        }
+
+        void onPathDataChanged() {
+            mPathDirty = true;
         }
 
         public String getPathName() {
@@ -1447,20 +4011,97 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             return false;
         }
 
+        void invalidateOwner() {
+            final boolean firstMutation = !mMutated;
+            mMutated = true;
+            mChanged = true;
+            if (mOwner != null) {
+                mOwner.invalidate(mBounds, mFirstPathIndex, mPathCount, firstMutation);
+            }
+        }
+
         /* Setters and Getters, used by animator from AnimatedVectorDrawable. */
         @SuppressWarnings("unused")
         public PathParser.PathDataNode[] getPathData() {
-            return mNodes;
+            return getNodes();
         }
 
         @SuppressWarnings("unused")
         public void setPathData(PathParser.PathDataNode[] nodes) {
-            if (!PathParser.canMorph(mNodes, nodes)) {
+            mMorphFrom = null;
+            mMorphTo = null;
+            if (!PathParser.canMorph(getNodes(), nodes)) {
                 // This should not happen in the middle of animation.
                 mNodes = PathParser.deepCopyNodes(nodes);
+                mNodesShared = false;
+            } else if (PathParser.hasSameParams(mNodes, nodes)) {
+                return;
             } else {
+                ensureNodesOwned();
                 PathParser.updateNodes(mNodes, nodes);
             }
+            onPathDataChanged();
+            invalidateOwner();
+        }
+
+        /**
+         * Prepares a morph between two path datas, which may use different commands. The
+         * path data becomes fromPathData, and setMorphFraction() then moves it toward
+         * toPathData without allocating.
+         *
+         * @param fromPathData Path data, the same as the "d" string in svg file.
+         * @param toPathData   Path data, the same as the "d" string in svg file.
+         */
+        public void setMorph(String fromPathData, String toPathData) {
+            final PathParser.PathDataNode[][] nodes = PathParser.createMorphableNodes(
+                    PathParser.createNodesFromPathData(fromPathData),
+                    PathParser.createNodesFromPathData(toPathData));
+            mMorphFrom = nodes[0];
+            mMorphTo = nodes[1];
+            mMorphFraction = 0;
+            mNodes = PathParser.deepCopyNodes(mMorphFrom);
+            mNodesShared = false;
+            mLazyPathData = null;
+            onPathDataChanged();
+            invalidateOwner();
+        }
+
+        /**
+         * @param fraction 0 for the fromPathData of setMorph(), 1 for its toPathData.
+         */
+        public void setMorphFraction(float fraction) {
+            if (mMorphFrom == null) {
+                throw new IllegalStateException("setMorph() must be called first");
+            }
+            if (fraction == mMorphFraction) {
+                return;
+            }
+            mMorphFraction = fraction;
+            ensureNodesOwned();
+            for (int i = 0; i < mNodes.length; i++) {
+                mNodes[i].interpolatePathDataNode(mMorphFrom[i], mMorphTo[i], fraction);
+            }
+            onPathDataChanged();
+            invalidateOwner();
+        }
+
+        private void ensureNodesOwned() {
+            if (mNodesShared) {
+                mNodes = PathParser.deepCopyNodes(mNodes);
+                mNodesShared = false;
+            }
+        }
+
+        public float getMorphFraction() {
+            return mMorphFraction;
+        }
+
+        /**
+         * @return whether setMorph() prepared a morph, which any call to setPathData()
+         * drops, even with the path data already shown.
+         */
+        public boolean hasMorph() {
+            return mMorphFrom != null;
         }
     }
 
@@ -1501,7 +4142,9 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             final String pathData =
                     a.getString(AndroidResources.styleable_VectorDrawableClipPath_pathData);
             if (pathData != null) {
-                mNodes = PathParser.createNodesFromPathData(pathData);
+                // Only parsed once the path is drawn or its path data is accessed.
+                mNodes = null;
+                mLazyPathData = new LazyPathData(pathData);
             }
         }
 
@@ -1534,6 +4177,19 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
         Paint.Join mStrokeLineJoin = Paint.Join.MITER;
         float mStrokeMiterlimit = 4;
 
+        // The cached Path with the trim applied, only rebuilt after the path data or one
+        // of the trim properties changes.
+        private Path mTrimmedPath;
+        private boolean mTrimDirty = true;
+        // Measures the trimmed contour, only set to the path again after the path data
+        // changes.
+        private PathMeasure mPathMeasure;
+        private float mPathLength;
+        private boolean mMeasureDirty = true;
+        // Only used when the renderer caches coverage, not shared by the copies.
+        CoverageMask mFillMask;
+        CoverageMask mStrokeMask;
+
         public VFullPath() {
             // Empty constructor.
         }
@@ -1588,6 +4244,78 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             return mThemeAttrs != null;
         }
 
+        @Override
+        void onPathDataChanged() {
+            super.onPathDataChanged();
+            mTrimDirty = true;
+            mMeasureDirty = true;
+            invalidateCoverageMasks();
+        }
+
+        private void invalidateCoverageMasks() {
+            if (mFillMask != null) {
+                mFillMask.mStale = true;
+            }
+            if (mStrokeMask != null) {
+                mStrokeMask.mStale = true;
+            }
+        }
+
+        /**
+         * @return the length of the contour trimmed by trimPathStart / trimPathEnd /
+         * trimPathOffset, which is the first contour of the path.
+         */
+        public float getPathLength() {
+            getPathMeasure();
+            return mPathLength;
+        }
+
+        private PathMeasure getPathMeasure() {
+            if (mPathMeasure == null) {
+                mPathMeasure = new PathMeasure();
+            }
+            if (mMeasureDirty) {
+                mPathMeasure.setPath(getPath(), false);
+                mPathLength = mPathMeasure.getLength();
+                mMeasureDirty = false;
+            }
+            return mPathMeasure;
+        }
+
+        /**
+         * @return the cached Path with trimPathStart / trimPathEnd / trimPathOffset applied.
+         */
+        Path getTrimmedPath() {
+            final Path path = getPath();
+            if (mTrimPathStart == 0.0f && mTrimPathEnd == 1.0f) {
+                return path;
+            }
+            if (mTrimmedPath == null) {
+                mTrimmedPath = new Path();
+            }
+            if (mTrimDirty) {
+                float start = (mTrimPathStart + mTrimPathOffset) % 1.0f;
+                float end = (mTrimPathEnd + mTrimPathOffset) % 1.0f;
+
+                // Only the trim changed since the path was last measured.
+                final PathMeasure pathMeasure = getPathMeasure();
+
+                float len = mPathLength;
+                start = start * len;
+                end = end * len;
+                mTrimmedPath.reset();
+                if (start > end) {
+                    pathMeasure.getSegment(start, len, mTrimmedPath, true);
+                    pathMeasure.getSegment(0f, end, mTrimmedPath, true);
+                } else {
+                    pathMeasure.getSegment(start, end, mTrimmedPath, true);
+                }
+                mTrimmedPath.rLineTo(0, 0); // fix bug in measure
+                mTrimDirty = false;
+            }
+            return mTrimmedPath;
+        }
+
         public void inflate(Resources r, AttributeSet attrs, Resources.Theme theme, XmlPullParser parser) {
             final TypedArray a = obtainAttributes(r, theme, attrs,
                     AndroidResources.styleable_VectorDrawablePath);
@@ -1621,7 +4349,9 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
             final String pathData =
                     a.getString(AndroidResources.styleable_VectorDrawablePath_pathData);
             if (pathData != null) {
-                mNodes = PathParser.createNodesFromPathData(pathData);
+                // Only parsed once the path is drawn or its path data is accessed.
+                mNodes = null;
+                mLazyPathData = new LazyPathData(pathData);
             }
 
             mFillColor = TypedArrayUtils.getNamedColor(a, parser, "fillColor",
@@ -1651,6 +4381,12 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
                     AndroidResources.styleable_VectorDrawablePath_trimPathStart, mTrimPathStart);
         }
 
+        private void invalidateColors() {
+            if (mOwner != null) {
+                mOwner.mSingleColorStale = true;
+            }
+        }
+
         @Override
         public void applyTheme(Resources.Theme t) {
             if (mThemeAttrs == null) {
@@ -1672,7 +4408,11 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
 
         @SuppressWarnings("unused")
         public void setStrokeColor(int strokeColor) {
-            mStrokeColor = strokeColor;
+            if (strokeColor != mStrokeColor) {
+                mStrokeColor = strokeColor;
+                invalidateColors();
+                invalidateOwner();
+            }
         }
 
         @SuppressWarnings("unused")
@@ -1682,7 +4422,13 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
 
         @SuppressWarnings("unused")
         public void setStrokeWidth(float strokeWidth) {
-            mStrokeWidth = strokeWidth;
+            if (strokeWidth != mStrokeWidth) {
+                mStrokeWidth = strokeWidth;
+                if (mStrokeMask != null) {
+                    mStrokeMask.mStale = true;
+                }
+                invalidateOwner();
+            }
         }
 
         @SuppressWarnings("unused")
@@ -1692,7 +4438,10 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
 
         @SuppressWarnings("unused")
         public void setStrokeAlpha(float strokeAlpha) {
-            mStrokeAlpha = strokeAlpha;
+            if (strokeAlpha != mStrokeAlpha) {
+                mStrokeAlpha = strokeAlpha;
+                invalidateOwner();
+            }
         }
 
         @SuppressWarnings("unused")
@@ -1702,7 +4451,11 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
 
         @SuppressWarnings("unused")
         public void setFillColor(int fillColor) {
-            mFillColor = fillColor;
+            if (fillColor != mFillColor) {
+                mFillColor = fillColor;
+                invalidateColors();
+                invalidateOwner();
+            }
         }
 
         @SuppressWarnings("unused")
@@ -1712,7 +4465,10 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
 
         @SuppressWarnings("unused")
         public void setFillAlpha(float fillAlpha) {
-            mFillAlpha = fillAlpha;
+            if (fillAlpha != mFillAlpha) {
+                mFillAlpha = fillAlpha;
+                invalidateOwner();
+            }
         }
 
         @SuppressWarnings("unused")
@@ -1722,7 +4478,12 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
 
         @SuppressWarnings("unused")
         public void setTrimPathStart(float trimPathStart) {
-            mTrimPathStart = trimPathStart;
+            if (trimPathStart != mTrimPathStart) {
+                mTrimPathStart = trimPathStart;
+                mTrimDirty = true;
+                invalidateCoverageMasks();
+                invalidateOwner();
+            }
         }
 
         @SuppressWarnings("unused")
@@ -1732,7 +4493,12 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
 
         @SuppressWarnings("unused")
         public void setTrimPathEnd(float trimPathEnd) {
-            mTrimPathEnd = trimPathEnd;
+            if (trimPathEnd != mTrimPathEnd) {
+                mTrimPathEnd = trimPathEnd;
+                mTrimDirty = true;
+                invalidateCoverageMasks();
+                invalidateOwner();
+            }
         }
 
         @SuppressWarnings("unused")
@@ -1742,7 +4508,12 @@ public class VectorDrawableCompat extends VectorDrawableCommon {
 
         @SuppressWarnings("unused")
         public void setTrimPathOffset(float trimPathOffset) {
-            mTrimPathOffset = trimPathOffset;
+            if (trimPathOffset != mTrimPathOffset) {
+                mTrimPathOffset = trimPathOffset;
+                mTrimDirty = true;
+                invalidateCoverageMasks();
+                invalidateOwner();
+            }
         }
     }
 }